@@ -1,180 +1,16 @@
 package Maze;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
-class State {
-    int x, y;
-    char[][] maze;
-    Set<String> visitedStates;
-
-    public State(int x, int y, char[][] maze, Set<String> visitedStates) {
-        this.x = x;
-        this.y = y;
-        this.maze = maze;
-        this.visitedStates = new HashSet<>(visitedStates);
-        this.visitedStates.add(getStateString());
-    }
-
-    public boolean isGoal() {
-        return maze[x][y] == 'G';
-    }
-
-    public List<State> getPossibleMoves() {
-        List<State> moves = new ArrayList<>();
-        int[] dx = {-1, 1, 0, 0};
-        int[] dy = {0, 0, -1, 1};
-
-        for (int i = 0; i < 4; i++) {
-            int newX = x + dx[i];
-            int newY = y + dy[i];
-            if (isValidMove(newX, newY)) {
-                char[][] newMaze = copyMaze();
-                newMaze[x][y] = '.';
-                if (maze[newX][newY] != 'G') {
-                    newMaze[newX][newY] = 'P';
-                }
-                moves.add(new State(newX, newY, newMaze, visitedStates));
-            }
-        }
-        return moves;
-    }
-
-    private boolean isValidMove(int x, int y) {
-        return x >= 0 && x < maze.length && y >= 0 && y < maze[0].length && maze[x][y] != 'X';
-    }
-
-    private char[][] copyMaze() {
-        char[][] copy = new char[maze.length][];
-        for (int i = 0; i < maze.length; i++) {
-            copy[i] = maze[i].clone();
-        }
-        return copy;
-    }
-
-    public String getStateString() {
-        return x + "," + y;
-    }
-}
-
-class Node {
-    State state;
-    Node parent;
-    List<Node> children;
-    int visits;
-    double value;
-
-    Set<String> exploredStates;
-
-    public Node(State state, Node parent) {
-        this.state = state;
-        this.parent = parent;
-        this.children = new ArrayList<>();
-        this.visits = 0;
-        this.value = 0.0;
-        this.exploredStates = new HashSet<>(state.visitedStates);
-    }
-
-    public Node selectChild() {
-        return children.stream()
-                .max(Comparator.comparingDouble(c -> c.getUCTValue(this.visits)))
-                .orElse(null);
-    }
-
-    private double getUCTValue(int parentVisits) {
-        if (visits == 0) return Double.MAX_VALUE;
-        return (value / visits) + Math.sqrt(2 * Math.log(parentVisits) / visits);
-    }
-
-    public void expand() {
-        List<State> possibleMoves = state.getPossibleMoves();
-        for (State move : possibleMoves) {
-            children.add(new Node(move, this));
-        }
-    }
-
-    public double simulate() {
-        State simState = this.state;
-        Random random = new Random();
-        int steps = 0;
-        int maxSteps = 3000;
-        Set<String> newExploredStates = new HashSet<>(exploredStates);
-
-        while (!simState.isGoal() && steps < maxSteps) {
-            List<State> moves = simState.getPossibleMoves();
-            if (moves.isEmpty()) {
-                break;
-            }
-
-            State nextState = moves.get(random.nextInt(moves.size()));
-            newExploredStates.add(nextState.getStateString());
-            simState = nextState;
-            steps++;
-        }
-
-        // Reward based on exploration and goal achievement
-        double explorationReward = (double) (newExploredStates.size() - exploredStates.size()) / state.maze.length / state.maze[0].length;
-        double goalReward = simState.isGoal() ? 1.0 : 0.0;
-
-        return 0.9 * explorationReward + 0.3 * goalReward;
-    }
-
-    public void backpropagate(double result) {
-        Node current = this;
-        while (current != null) {
-            current.visits++;
-            current.value += result;
-            current = current.parent;
-        }
-    }
-}
-
-class MonteCarloTreeSearch {
-    public List<Node> runMCTS(State initialState, int iterations) {
-        Node root = new Node(initialState, null);
-        Random random = new Random();
-
-        for (int i = 0; i < iterations; i++) {
-            Node selectedNode = root;
-
-            // Selection
-            while (!selectedNode.children.isEmpty()) {
-                selectedNode = selectedNode.selectChild();
-            }
-
-            // Expansion
-            selectedNode.expand();
-
-            // Simulation
-            Node toSimulate = selectedNode;
-            if (!selectedNode.children.isEmpty()) {
-                toSimulate = selectedNode.children.get(random.nextInt(selectedNode.children.size()));
-            }
-            double result = toSimulate.simulate();
-
-            // Backpropagation
-            toSimulate.backpropagate(result);
-        }
-
-        // Select the path with the most explored states
-        List<Node> path = new ArrayList<>();
-        Node current = root;
-        while (!current.children.isEmpty()) {
-            current = current.children.stream()
-                    .max(Comparator.comparingInt(c -> c.exploredStates.size()))
-                    .orElse(null);
-            path.add(current);
-            if (current.state.isGoal()) break;
-        }
-
-        return path;
-    }
-}
-
-
 public class Main {
     static int[] goal = {5, 8};
+    // Checks in a row with the same best path after which a time-budgeted search stops.
+    static final int STABLE_CHECKS = 20;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         char[][] maze = {
                 {'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X'},
                 {'X', '.', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X'},
@@ -187,7 +23,25 @@ public class Main {
 
         State initialState = new State(1, 1, maze, new HashSet<>());
         MonteCarloTreeSearch mcts = new MonteCarloTreeSearch();
-        List<Node> path = mcts.runMCTS(initialState, 10000);
+        // -Dsokoban.mcts.parallel=root|leaf picks a parallel mode, on sokoban.mcts.threads threads.
+        String parallel = System.getProperty("sokoban.mcts.parallel", "");
+        int threads = Integer.getInteger("sokoban.mcts.threads", Runtime.getRuntime().availableProcessors());
+        // -Dsokoban.mcts.budget=<ms> searches for at most that long, logging each new best path.
+        long budget = Long.getLong("sokoban.mcts.budget", 0);
+        List<Node> path;
+        if (budget > 0) {
+            long start = System.nanoTime();
+            path = mcts.runUntil(initialState, start + budget * 1_000_000, Integer.MAX_VALUE, STABLE_CHECKS,
+                    best -> System.err.printf(Locale.ROOT, "[mcts] path of %d steps%s after %d ms%n", best.size(),
+                            !best.isEmpty() && best.get(best.size() - 1).state.isGoal() ? " to the goal" : "",
+                            (System.nanoTime() - start) / 1_000_000));
+        } else if (parallel.equals("root")) {
+            path = mcts.runRootParallel(initialState, 10000, threads);
+        } else if (parallel.equals("leaf")) {
+            path = mcts.runLeafParallel(initialState, 10000, threads);
+        } else {
+            path = mcts.runMCTS(initialState, 10000);
+        }
 
         // Print out the resulting path
         for (Node node : path) {
@@ -195,6 +49,39 @@ public class Main {
         }
     }
 
+    /**
+     * Reads mazes written one row per line ('X' wall, '.' floor, 'P' start, 'G' goal), separated by
+     * blank lines or ';' comment lines.
+     */
+    public static List<char[][]> loadMazes(Path path) throws IOException {
+        List<char[][]> mazes = new ArrayList<>();
+        List<char[]> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            if (line.isBlank() || line.startsWith(";")) {
+                if (!rows.isEmpty()) {
+                    mazes.add(rows.toArray(new char[0][]));
+                    rows.clear();
+                }
+            } else {
+                rows.add(line.toCharArray());
+            }
+        }
+        if (!rows.isEmpty()) {
+            mazes.add(rows.toArray(new char[0][]));
+        }
+        return mazes;
+    }
+
+    public static int[] findStart(char[][] maze) {
+        for (int i = 0; i < maze.length; i++) {
+            for (int j = 0; j < maze[i].length; j++) {
+                if (maze[i][j] == 'P')
+                    return new int[]{i, j};
+            }
+        }
+        return new int[]{-1, -1};
+    }
+
     public static void printMaze(char[][] maze) {
         for (char[] row : maze) {
             for (char cell : row) {
@@ -0,0 +1,151 @@
+package Maze;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Seeded maze generator. A perfect maze, with exactly one path between any two rooms, is carved
+ * by a randomized depth-first search over a grid of rooms. An imperfect maze then has a fraction
+ * of the remaining inner walls knocked down, which opens loops. Rooms sit on odd coordinates, so
+ * a maze of h x w rooms is (2h + 1) x (2w + 1) characters. The player starts in the top-left
+ * room and the goal on the open cell farthest from it. Everything is iterative and array-based, so
+ * mazes of millions of cells are fine.
+ */
+public final class MazeGenerator {
+
+    /**
+     * Usage: {@code java Maze.MazeGenerator <out> <count> <height> <width> [loops] [seed]}, with
+     * the size in rooms. Writes {@code count} mazes in the format {@link Main#loadMazes} reads,
+     * generated in parallel.
+     */
+    public static void main(String[] args) throws IOException {
+        Path out = Path.of(args[0]);
+        int count = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        int width = Integer.parseInt(args[3]);
+        double loops = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+        long start = System.nanoTime();
+        write(generate(height, width, loops, seed, count), out);
+        System.out.printf("%d mazes written to %s in %.0f ms%n", count, out, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Generates {@code count} mazes in parallel. Maze k is the one {@link #generate(int, int,
+     * double, long)} gives for {@code seed + k}, so the corpus does not depend on the number of
+     * threads.
+     */
+    public static List<char[][]> generate(int height, int width, double loops, long seed, int count) {
+        return IntStream.range(0, count).parallel()
+                .mapToObj(k -> generate(height, width, loops, seed + k))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param loops chance that each inner wall left standing in the perfect maze is knocked down;
+     *              0 keeps the maze perfect
+     */
+    public static char[][] generate(int height, int width, double loops, long seed) {
+        if (height < 1 || width < 1 || height * width < 2) {
+            throw new IllegalArgumentException("Need at least two rooms, got " + height + "x" + width);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int rows = 2 * height + 1;
+        int cols = 2 * width + 1;
+        char[][] maze = new char[rows][cols];
+        for (char[] row : maze) {
+            Arrays.fill(row, 'X');
+        }
+
+        // Randomized depth-first search over rooms, with an explicit stack.
+        boolean[] visited = new boolean[height * width];
+        int[] stack = new int[height * width];
+        int[] options = new int[4];
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        maze[1][1] = '.';
+        while (top > 0) {
+            int room = stack[top - 1];
+            int i = room / width;
+            int j = room % width;
+            int n = 0;
+            if (i > 0 && !visited[room - width]) options[n++] = room - width;
+            if (i < height - 1 && !visited[room + width]) options[n++] = room + width;
+            if (j > 0 && !visited[room - 1]) options[n++] = room - 1;
+            if (j < width - 1 && !visited[room + 1]) options[n++] = room + 1;
+            if (n == 0) {
+                top--;
+                continue;
+            }
+            int next = options[random.nextInt(n)];
+            int ni = next / width;
+            int nj = next % width;
+            maze[i + ni + 1][j + nj + 1] = '.';
+            maze[2 * ni + 1][2 * nj + 1] = '.';
+            visited[next] = true;
+            stack[top++] = next;
+        }
+
+        // Inner walls between two rooms sit where exactly one coordinate is even.
+        if (loops > 0) {
+            for (int i = 1; i < rows - 1; i++) {
+                for (int j = 1 + (i & 1); j < cols - 1; j += 2) {
+                    if (maze[i][j] == 'X' && random.nextDouble() < loops) {
+                        maze[i][j] = '.';
+                    }
+                }
+            }
+        }
+
+        maze[1][1] = 'P';
+        int goal = farthest(maze, cols + 1);
+        maze[goal / cols][goal % cols] = 'G';
+        return maze;
+    }
+
+    /**
+     * Writes mazes one row per line, each under a "; maze-k" title and followed by a blank line.
+     */
+    public static void write(List<char[][]> mazes, Path path) throws IOException {
+        try (var out = Files.newBufferedWriter(path)) {
+            for (int k = 0; k < mazes.size(); k++) {
+                out.write("; maze-" + (k + 1));
+                out.newLine();
+                for (char[] row : mazes.get(k)) {
+                    out.write(row);
+                    out.newLine();
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    // The open cell farthest from start by breadth-first search; the last one dequeued.
+    private static int farthest(char[][] maze, int start) {
+        int rows = maze.length;
+        int cols = maze[0].length;
+        boolean[] seen = new boolean[rows * cols];
+        int[] queue = new int[rows * cols];
+        int head = 0, tail = 0;
+        seen[start] = true;
+        queue[tail++] = start;
+        int[] steps = {-cols, cols, -1, 1};
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int step : steps) {
+                int next = cell + step;
+                if (!seen[next] && maze[next / cols][next % cols] != 'X') {
+                    seen[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return queue[tail - 1];
+    }
+}
@@ -0,0 +1,321 @@
+package Maze;
+
+import Sokoban.SolverMetrics;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Monte Carlo tree search from the start of a maze towards 'G'. Besides the sequential search
+ * there are two parallel modes: root-parallel search grows an independent tree on each thread
+ * and merges the statistics of the root's children at the end, and leaf-parallel search grows one
+ * tree and runs a batch of rollouts at once from each selected node. Every thread draws from its
+ * own {@link SplittableRandom}, split from the search's seed. {@link #runUntil} searches against
+ * a deadline instead of a fixed count, stops early once the best path settles, and reuses its
+ * tree across queries on the same maze.
+ */
+class MonteCarloTreeSearch {
+    final SolverMetrics metrics = new SolverMetrics("mcts");
+    private final LongAdder iterationCount = metrics.counter("iterations");
+    private final LongAdder rolloutCount = metrics.counter("rollouts");
+    private final LongAdder reusedNodes = metrics.counter("reusedNodes");
+    private final SolverMetrics.Gauge treeSize = metrics.gauge("treeSize");
+    private final SolverMetrics.Gauge stableGauge = metrics.gauge("stableChecks");
+    private final SplittableRandom seed;
+
+    // How many iterations runUntil runs between looks at the best path.
+    static final int CHECK_INTERVAL = 100;
+
+    private Node lastRoot;
+    private char[][] lastMaze;
+
+    public MonteCarloTreeSearch() {
+        this(new SplittableRandom());
+    }
+
+    public MonteCarloTreeSearch(SplittableRandom seed) {
+        this.seed = seed;
+    }
+
+    public List<Node> runMCTS(State initialState, int iterations) {
+        Node root = new Node(initialState, null);
+        SplittableRandom random = seed.split();
+
+        metrics.start();
+        try {
+            grow(root, iterations, random);
+        } finally {
+            metrics.stop();
+        }
+        return extractPath(root);
+    }
+
+    /**
+     * Root-parallel search: one tree per thread, each of {@code iterations} iterations. The root's
+     * children are matched by state across the trees and the first step is the child with the
+     * most visits in total; the rest of the path comes from the tree that visited that child most.
+     * The treeSize gauge follows whichever tree grew last.
+     */
+    public List<Node> runRootParallel(State initialState, int iterations, int threads) throws InterruptedException {
+        List<Callable<Node>> trees = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = seed.split();
+            trees.add(() -> {
+                Node root = new Node(initialState, null);
+                grow(root, iterations, random);
+                return root;
+            });
+        }
+
+        List<Node> roots = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        metrics.start();
+        try {
+            for (Future<Node> tree : executor.invokeAll(trees)) {
+                roots.add(tree.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            metrics.stop();
+            executor.shutdownNow();
+        }
+        return mergeRoots(roots);
+    }
+
+    // The path through the root child with the most visits summed over all trees, taken from the
+    // tree that visited that child most.
+    static List<Node> mergeRoots(List<Node> roots) {
+        Map<String, Integer> visits = new HashMap<>();
+        for (Node root : roots) {
+            for (Node child : root.children) {
+                visits.merge(child.state.getStateString(), child.visits, Integer::sum);
+            }
+        }
+        String best = visits.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+
+        Node first = null;
+        for (Node root : roots) {
+            for (Node child : root.children) {
+                if (child.state.getStateString().equals(best) && (first == null || child.visits > first.visits)) {
+                    first = child;
+                }
+            }
+        }
+        List<Node> path = new ArrayList<>();
+        if (first == null) return path;
+        path.add(first);
+        if (!first.state.isGoal()) path.addAll(extractPath(first));
+        return path;
+    }
+
+    /**
+     * Leaf-parallel search: one tree, with {@code threads} rollouts run at once from every node
+     * the selection reaches, each backpropagated on its own. Each iteration hands its batch to the
+     * pool with one {@code invokeAll} and waits for all of it, so with short rollouts the hand-off
+     * can cost more than the rollouts themselves.
+     */
+    public List<Node> runLeafParallel(State initialState, int iterations, int threads) throws InterruptedException {
+        Node root = new Node(initialState, null);
+        SplittableRandom random = seed.split();
+        SplittableRandom[] rolloutRandoms = new SplittableRandom[threads];
+        for (int t = 0; t < threads; t++) {
+            rolloutRandoms[t] = seed.split();
+        }
+        int nodes = 1;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        metrics.start();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                Node selectedNode = selectAndExpand(root);
+                nodes += selectedNode.children.size();
+                Node toSimulate = pick(selectedNode, random);
+
+                // Simulation, one rollout per thread. Slot t always uses rolloutRandoms[t], and a
+                // batch finishes before the next starts, so no random source is shared.
+                List<Callable<Double>> rollouts = new ArrayList<>(threads);
+                for (SplittableRandom rolloutRandom : rolloutRandoms) {
+                    rollouts.add(() -> toSimulate.simulate(rolloutRandom));
+                }
+                for (Future<Double> result : executor.invokeAll(rollouts)) {
+                    toSimulate.backpropagate(result.get());
+                    rolloutCount.increment();
+                }
+
+                iterationCount.increment();
+                treeSize.set(nodes);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            metrics.stop();
+            executor.shutdownNow();
+        }
+        return extractPath(root);
+    }
+
+    private void grow(Node root, int iterations, SplittableRandom random) {
+        int nodes = 1;
+        for (int i = 0; i < iterations; i++) {
+            nodes += iterate(root, random);
+            treeSize.set(nodes);
+        }
+    }
+
+    /**
+     * Searches until {@code deadline} (a {@link System#nanoTime()} value) or {@code maxIterations},
+     * whichever comes first, or until the best path has reached the goal and come out the same at
+     * {@code stableChecks} checks in a row. A path that stops short of the goal never counts as
+     * settled, however long it stays the same. The best path is checked every
+     * {@link #CHECK_INTERVAL} iterations, and {@code listener} is given it whenever it changes.
+     * <p>
+     * The tree is kept for the next call. If that call starts on the same maze from a position
+     * the kept tree has reached, the search carries on from there instead of from scratch.
+     */
+    public List<Node> runUntil(State initialState, long deadline, int maxIterations, int stableChecks,
+                               Consumer<List<Node>> listener) {
+        Node root = reusableRoot(initialState);
+        SplittableRandom random = seed.split();
+        int nodes = countNodes(root);
+        List<Node> best = extractPath(root);
+        List<String> bestStates = states(best);
+        int stable = 0;
+
+        metrics.start();
+        try {
+            for (int i = 0; i < maxIterations && System.nanoTime() - deadline < 0; i++) {
+                nodes += iterate(root, random);
+                treeSize.set(nodes);
+
+                if ((i + 1) % CHECK_INTERVAL == 0) {
+                    List<Node> path = extractPath(root);
+                    List<String> pathStates = states(path);
+                    if (pathStates.equals(bestStates)) {
+                        if (reachesGoal(best)) stable++;
+                    } else {
+                        best = path;
+                        bestStates = pathStates;
+                        stable = 0;
+                        listener.accept(best);
+                    }
+                    stableGauge.set(stable);
+                    if (stable >= stableChecks) break;
+                }
+            }
+        } finally {
+            metrics.stop();
+        }
+
+        lastRoot = root;
+        lastMaze = initialState.maze;
+        return extractPath(root);
+    }
+
+    private static boolean reachesGoal(List<Node> path) {
+        return !path.isEmpty() && path.get(path.size() - 1).state.isGoal();
+    }
+
+    // The kept tree's node for this start, detached from its parent, or a new root if the maze is
+    // different or the tree never reached the start position.
+    private Node reusableRoot(State initialState) {
+        if (lastRoot != null && sameWalls(lastMaze, initialState.maze)) {
+            Deque<Node> queue = new ArrayDeque<>();
+            queue.add(lastRoot);
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                if (node.state.x == initialState.x && node.state.y == initialState.y) {
+                    node.parent = null;
+                    reusedNodes.add(countNodes(node));
+                    return node;
+                }
+                queue.addAll(node.children);
+            }
+        }
+        return new Node(initialState, null);
+    }
+
+    private static boolean sameWalls(char[][] a, char[][] b) {
+        if (a.length != b.length) return false;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].length != b[i].length) return false;
+            for (int j = 0; j < a[i].length; j++) {
+                if ((a[i][j] == 'X') != (b[i][j] == 'X') || (a[i][j] == 'G') != (b[i][j] == 'G')) return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countNodes(Node root) {
+        int count = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            count++;
+            node.children.forEach(stack::push);
+        }
+        return count;
+    }
+
+    private static List<String> states(List<Node> path) {
+        List<String> states = new ArrayList<>(path.size());
+        for (Node node : path) {
+            states.add(node.state.getStateString());
+        }
+        return states;
+    }
+
+    // One selection, expansion, simulation and backpropagation. Returns the number of nodes added.
+    private int iterate(Node root, SplittableRandom random) {
+        Node selectedNode = selectAndExpand(root);
+
+        // Simulation
+        Node toSimulate = pick(selectedNode, random);
+        double result = toSimulate.simulate(random);
+        rolloutCount.increment();
+
+        // Backpropagation
+        toSimulate.backpropagate(result);
+
+        iterationCount.increment();
+        return selectedNode.children.size();
+    }
+
+    private static Node selectAndExpand(Node root) {
+        Node selectedNode = root;
+
+        // Selection
+        while (!selectedNode.children.isEmpty()) {
+            selectedNode = selectedNode.selectChild();
+        }
+
+        // Expansion
+        selectedNode.expand();
+        return selectedNode;
+    }
+
+    private static Node pick(Node selectedNode, SplittableRandom random) {
+        if (selectedNode.children.isEmpty()) return selectedNode;
+        return selectedNode.children.get(random.nextInt(selectedNode.children.size()));
+    }
+
+    // Select the path with the most explored states
+    private static List<Node> extractPath(Node from) {
+        List<Node> path = new ArrayList<>();
+        Node current = from;
+        while (!current.children.isEmpty()) {
+            current = current.children.stream()
+                    .max(Comparator.comparingInt(c -> c.exploredStates.size()))
+                    .orElse(null);
+            path.add(current);
+            if (current.state.isGoal()) break;
+        }
+        return path;
+    }
+}
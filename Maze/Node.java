@@ -0,0 +1,79 @@
+package Maze;
+
+import java.util.*;
+
+class Node {
+    State state;
+    Node parent;
+    List<Node> children;
+    int visits;
+    double value;
+
+    Set<String> exploredStates;
+
+    public Node(State state, Node parent) {
+        this.state = state;
+        this.parent = parent;
+        this.children = new ArrayList<>();
+        this.visits = 0;
+        this.value = 0.0;
+        this.exploredStates = new HashSet<>(state.visitedStates);
+    }
+
+    public Node selectChild() {
+        return children.stream()
+                .max(Comparator.comparingDouble(c -> c.getUCTValue(this.visits)))
+                .orElse(null);
+    }
+
+    private double getUCTValue(int parentVisits) {
+        if (visits == 0) return Double.MAX_VALUE;
+        return (value / visits) + Math.sqrt(2 * Math.log(parentVisits) / visits);
+    }
+
+    public void expand() {
+        List<State> possibleMoves = state.getPossibleMoves();
+        for (State move : possibleMoves) {
+            children.add(new Node(move, this));
+        }
+    }
+
+    /**
+     * Plays random moves from this node's state and scores how much new ground they covered and
+     * whether they reached the goal. Each thread passes its own random source, so rollouts that
+     * run side by side share nothing.
+     */
+    public double simulate(SplittableRandom random) {
+        State simState = this.state;
+        int steps = 0;
+        int maxSteps = 3000;
+        Set<String> newExploredStates = new HashSet<>(exploredStates);
+
+        while (!simState.isGoal() && steps < maxSteps) {
+            List<State> moves = simState.getPossibleMoves();
+            if (moves.isEmpty()) {
+                break;
+            }
+
+            State nextState = moves.get(random.nextInt(moves.size()));
+            newExploredStates.add(nextState.getStateString());
+            simState = nextState;
+            steps++;
+        }
+
+        // Reward based on exploration and goal achievement
+        double explorationReward = (double) (newExploredStates.size() - exploredStates.size()) / state.maze.length / state.maze[0].length;
+        double goalReward = simState.isGoal() ? 1.0 : 0.0;
+
+        return 0.9 * explorationReward + 0.3 * goalReward;
+    }
+
+    public void backpropagate(double result) {
+        Node current = this;
+        while (current != null) {
+            current.visits++;
+            current.value += result;
+            current = current.parent;
+        }
+    }
+}
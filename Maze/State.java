@@ -0,0 +1,57 @@
+package Maze;
+
+import java.util.*;
+
+class State {
+    int x, y;
+    char[][] maze;
+    Set<String> visitedStates;
+
+    public State(int x, int y, char[][] maze, Set<String> visitedStates) {
+        this.x = x;
+        this.y = y;
+        this.maze = maze;
+        this.visitedStates = new HashSet<>(visitedStates);
+        this.visitedStates.add(getStateString());
+    }
+
+    public boolean isGoal() {
+        return maze[x][y] == 'G';
+    }
+
+    public List<State> getPossibleMoves() {
+        List<State> moves = new ArrayList<>();
+        int[] dx = {-1, 1, 0, 0};
+        int[] dy = {0, 0, -1, 1};
+
+        for (int i = 0; i < 4; i++) {
+            int newX = x + dx[i];
+            int newY = y + dy[i];
+            if (isValidMove(newX, newY)) {
+                char[][] newMaze = copyMaze();
+                newMaze[x][y] = '.';
+                if (maze[newX][newY] != 'G') {
+                    newMaze[newX][newY] = 'P';
+                }
+                moves.add(new State(newX, newY, newMaze, visitedStates));
+            }
+        }
+        return moves;
+    }
+
+    private boolean isValidMove(int x, int y) {
+        return x >= 0 && x < maze.length && y >= 0 && y < maze[0].length && maze[x][y] != 'X';
+    }
+
+    private char[][] copyMaze() {
+        char[][] copy = new char[maze.length][];
+        for (int i = 0; i < maze.length; i++) {
+            copy[i] = maze[i].clone();
+        }
+        return copy;
+    }
+
+    public String getStateString() {
+        return x + "," + y;
+    }
+}
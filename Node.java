@@ -0,0 +1,540 @@
+import Sokoban.Bitboard;
+import Sokoban.BitboardState;
+import Sokoban.DeadlockPatterns;
+import Sokoban.Level;
+import Sokoban.PatternDatabase;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+class Node implements Comparable<Node> {
+    final Level level;
+    Node parent;
+    char dir;
+    String moves; // set instead of dir when the step is a macro of several moves
+    int i, j;
+    int g;
+    Map<Integer, int[]> boxPositions;
+    int boxKeySum; // sum of the box keys, which is the hash of their key set
+    private int h = -1;
+
+    public Node(Level level, Node parent, char dir, int i, int j, int g, Map<Integer, int[]> boxPositions) {
+        this.level = level;
+        this.parent = parent;
+        this.dir = dir;
+        this.i = i;
+        this.j = j;
+        this.g = g;
+        this.boxPositions = new HashMap<>(boxPositions);
+        // A pushed view lends the moved box its own array, which the view reuses.
+        if (boxPositions instanceof PushedBoxes) {
+            PushedBoxes pushed = (PushedBoxes) boxPositions;
+            this.boxPositions.put(pushed.key(), new int[]{pushed.i(), pushed.j()});
+        }
+        for (int key : this.boxPositions.keySet()) {
+            boxKeySum += key;
+        }
+    }
+
+    // A probe for the successor generator to point at candidate positions before any child is
+    // built: it sets i, j, boxPositions and boxKeySum itself.
+    Node(Level level) {
+        this.level = level;
+    }
+
+    public Node(Level level, Node parent, String moves, int i, int j, int g, Map<Integer, int[]> boxPositions) {
+        this(level, parent, moves.charAt(moves.length() - 1), i, j, g, boxPositions);
+        if (moves.length() > 1)
+            this.moves = moves;
+    }
+
+    @Override
+    public int compareTo(Node o) {
+        return (this.g + this.heuristic()) - (o.g + o.heuristic());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Node node = (Node) o;
+        return i == node.i && j == node.j && boxPositions.keySet().equals(node.boxPositions.keySet());
+    }
+
+    // The value of Objects.hash(i, j, boxPositions.keySet()), without walking the boxes.
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 + i) + j) + boxKeySum;
+    }
+
+    boolean isSolved() {
+        for (int[] box : boxPositions.values()) {
+            if (!level.isGoal(box[0], box[1]))
+                return false;
+        }
+        return true;
+    }
+
+    // The moves from here, on the HashMap board or, with -Dsokoban.board=bitboard, on bitboards.
+    public List<Node> children() {
+        return Bitboard.SELECTED ? bitboardChildren() : hashMapChildren();
+    }
+
+    List<Node> hashMapChildren() {
+        List<Node> children = new ArrayList<>();
+        int[][] directions = Level.DIRECTIONS;
+        char[] dirChars = Level.MOVES;
+
+        for (int d = 0; d < 4; d++) {
+            int ni = i + directions[d][0];
+            int nj = j + directions[d][1];
+
+            if (!level.isWall(ni, nj)) {
+                HashMap<Integer, int[]> newBoxPositions = new HashMap<>(boxPositions);
+                int key = Level.cantorPair(ni, nj);
+
+                if (newBoxPositions.containsKey(key)) {
+                    int nni = ni + directions[d][0];
+                    int nnj = nj + directions[d][1];
+                    if (!level.isWall(nni, nnj) && !newBoxPositions.containsKey(Level.cantorPair(nni, nnj))) {
+                        newBoxPositions.put(Level.cantorPair(nni, nnj), new int[]{nni, nnj});
+                        newBoxPositions.remove(key);
+                        children.add(new Node(level, this, dirChars[d], ni, nj, g + 1, newBoxPositions));
+                        if (mayExtendPush(d, ni, nj, nni, nnj)) {
+                            PushedBoxes pushed = new PushedBoxes();
+                            pushed.reset(boxPositions, boxKeySum, key, nni, nnj);
+                            String moves = macroPush(d, ni, nj, pushed);
+                            if (moves != null)
+                                children.add(macroChild(moves, pushed));
+                        }
+                    }
+                } else {
+                    children.add(new Node(level, this, dirChars[d], ni, nj, g + 1, newBoxPositions));
+                }
+            }
+        }
+        return children;
+    }
+
+    // The single steps hashMapChildren() makes, found on bitboards: no macro pushes, and a push
+    // that leaves its box on a dead square is dropped straight away.
+    List<Node> bitboardChildren() {
+        List<Node> children = new ArrayList<>(4);
+        BitboardState state = BitboardState.of(level.bitboard(), level.cell(i, j), boxCells());
+        for (int d = 0; d < 4; d++) {
+            BitboardState child = state.copy();
+            if (!child.move(d))
+                continue;
+            int next = child.player();
+            int ni = next / level.cols();
+            int nj = next % level.cols();
+            if (!state.hasBox(next)) {
+                children.add(new Node(level, this, Level.MOVES[d], ni, nj, g + 1, boxPositions));
+            } else if (!child.hasDeadBox()) {
+                int beyond = level.neighbour(next, d);
+                HashMap<Integer, int[]> newBoxPositions = new HashMap<>(boxPositions);
+                newBoxPositions.remove(Level.cantorPair(ni, nj));
+                newBoxPositions.put(Level.cantorPair(beyond / level.cols(), beyond % level.cols()),
+                        new int[]{beyond / level.cols(), beyond % level.cols()});
+                children.add(new Node(level, this, Level.MOVES[d], ni, nj, g + 1, newBoxPositions));
+            }
+        }
+        return children;
+    }
+
+    // True if macroPush may turn the push of the box onto (bi, bj) into more than a single step,
+    // that is, if the box lands in a tunnel, on a goal room's entrance, or from outside the goal
+    // area on a goal that may be ahead of the packing order.
+    boolean mayExtendPush(int d, int pi, int pj, int bi, int bj) {
+        int box = level.cell(bi, bj);
+        return level.isTunnel(box, d) && !level.isGoal(box)
+                || level.roomAtEntrance(box) != -1
+                || !level.isGoal(pi, pj) && level.goalRank(box) > 0;
+    }
+
+    // Extends a push that leaves the box in a tunnel, or on the entrance of a goal room, into one
+    // child covering the whole sequence: the box is pushed on until it leaves the tunnel, and a
+    // box entering a goal room is taken straight to the deepest free goal. The macro is offered
+    // beside the single push, which stays a child of its own since the box may have to be parked
+    // on the way. Takes the boxes after the single push and moves the box on in them; returns the
+    // moves of the whole macro, or null if the push cannot be extended.
+    String macroPush(int d, int pi, int pj, PushedBoxes boxes) {
+        int bi = boxes.i();
+        int bj = boxes.j();
+        StringBuilder moves = new StringBuilder().append(Level.MOVES[d]);
+        int from = level.cell(pi, pj);
+        int di = Level.DIRECTIONS[d][0];
+        int dj = Level.DIRECTIONS[d][1];
+
+        while (level.isTunnel(level.cell(bi, bj), d) && !level.isGoal(bi, bj)) {
+            int ti = bi + di;
+            int tj = bj + dj;
+            if (level.isWall(ti, tj) || boxes.containsKey(Level.cantorPair(ti, tj)))
+                break;
+            boxes.moveTo(ti, tj);
+            pi = bi;
+            pj = bj;
+            bi = ti;
+            bj = tj;
+            moves.append(Level.MOVES[d]);
+        }
+
+        int room = level.roomAtEntrance(level.cell(bi, bj));
+        if (room != -1) {
+            int target = -1;
+            for (int goal : level.roomGoals(room)) {
+                if (!boxes.containsKey(Level.cantorPair(goal / level.cols(), goal % level.cols()))) {
+                    target = goal;
+                    break;
+                }
+            }
+            int entrance = level.roomEntrance(room);
+            int goal = target;
+            int[] result = target == -1 ? null : pushWithin(level.cell(pi, pj), level.cell(bi, bj),
+                    cell -> level.goalRoom(cell) == room || cell == entrance, cell -> cell == goal, boxes, moves);
+            if (result != null) {
+                bi = result[1] / level.cols();
+                bj = result[1] % level.cols();
+                boxes.moveTo(bi, bj);
+                pi = result[0] / level.cols();
+                pj = result[0] % level.cols();
+            }
+        }
+
+        // A box brought onto the goal area ahead of its packing order is carried on over the goals
+        // to the next goal due to be filled, if it can get there. The order is only a guide: the
+        // push that stops short stays a child, so nothing is pruned.
+        int[] carried = null;
+        if (!level.isGoal(from) && level.isGoal(bi, bj) && fillsOutOfOrder(level.cell(bi, bj), boxes)) {
+            int rank = lowestEmptyRank(boxes);
+            carried = pushWithin(level.cell(pi, pj), level.cell(bi, bj), level::isGoal,
+                    cell -> level.goalRank(cell) == rank, boxes, moves);
+        }
+        if (carried != null) {
+            bi = carried[1] / level.cols();
+            bj = carried[1] % level.cols();
+            boxes.moveTo(bi, bj);
+        }
+
+        return moves.length() == 1 ? null : moves.toString();
+    }
+
+    // The player's cell at the end of a macro from macroPush. Every macro ends on a push, so the
+    // player stands next to the box, on the side the last move came from.
+    static int macroPlayer(Level level, String moves, PushedBoxes boxes) {
+        int d = "UDLR".indexOf(moves.charAt(moves.length() - 1));
+        return level.cell(boxes.i() - Level.DIRECTIONS[d][0], boxes.j() - Level.DIRECTIONS[d][1]);
+    }
+
+    // The child for a macro from macroPush, with its own copy of the boxes.
+    Node macroChild(String moves, PushedBoxes boxes) {
+        int player = macroPlayer(level, moves, boxes);
+        return new Node(level, this, moves, player / level.cols(), player % level.cols(), g + moves.length(), boxes);
+    }
+
+    // Filling a goal is out of order while a goal of lower packing rank is still empty.
+    private boolean fillsOutOfOrder(int cell, Map<Integer, int[]> boxes) {
+        int rank = level.goalRank(cell);
+        return rank > 0 && lowestEmptyRank(boxes) < rank;
+    }
+
+    private int lowestEmptyRank(Map<Integer, int[]> boxes) {
+        for (int k = 0; k < level.goalCount(); k++) {
+            int goal = level.goalInOrder(k);
+            if (!boxes.containsKey(Level.cantorPair(goal / level.cols(), goal % level.cols())))
+                return level.goalRank(goal);
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    // Breadth-first search over (box, player) positions for the shortest way to push the box
+    // onto a target cell while it only passes through allowed cells, with the other boxes as
+    // obstacles. Appends the moves and returns {player, box} cells, or null if there is none.
+    private int[] pushWithin(int player, int box, IntPredicate allowed, IntPredicate target,
+                             Map<Integer, int[]> boxes, StringBuilder moves) {
+        int cells = level.rows() * level.cols();
+        boolean[] blocked = new boolean[cells];
+        for (int[] other : boxes.values()) {
+            blocked[level.cell(other[0], other[1])] = true;
+        }
+        blocked[box] = false;
+
+        HashMap<Long, Long> parents = new HashMap<>();
+        HashMap<Long, Character> steps = new HashMap<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        long start = (long) box * cells + player;
+        parents.put(start, -1L);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            long state = queue.poll();
+            int b = (int) (state / cells);
+            int p = (int) (state % cells);
+            if (target.test(b)) {
+                StringBuilder path = new StringBuilder();
+                for (long s = state; parents.get(s) != -1L; s = parents.get(s)) {
+                    path.append(steps.get(s));
+                }
+                moves.append(path.reverse());
+                return new int[]{p, b};
+            }
+            for (int d = 0; d < 4; d++) {
+                int next = level.neighbour(p, d);
+                if (next == -1 || blocked[next])
+                    continue;
+                int nextBox = b;
+                if (next == b) {
+                    nextBox = level.neighbour(b, d);
+                    if (nextBox == -1 || blocked[nextBox] || !allowed.test(nextBox))
+                        continue;
+                }
+                long nextState = (long) nextBox * cells + next;
+                if (!parents.containsKey(nextState)) {
+                    parents.put(nextState, state);
+                    steps.put(nextState, Level.MOVES[d]);
+                    queue.add(nextState);
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean hasDeadlock() {
+        return deadlock() != null;
+    }
+
+    // The board cells of a set of boxes that can never all reach goals, or null if none is found.
+    public int[] deadlock() {
+        for (int[] box : boxPositions.values()) {
+            if (isBoxStuck(box[0], box[1]) && !level.isGoal(box[0], box[1])) {
+                return new int[]{level.cell(box[0], box[1])};
+            }
+        }
+        DeadlockPatterns known = level.deadlockPatterns();
+        if (known != null && known.size() > 0) {
+            int[] pattern = known.find(boxCells());
+            if (pattern != null)
+                return pattern;
+        }
+        int[] group = stuckGroup();
+        return group != null ? group : unsolvablePair();
+    }
+
+    private int[] boxCells() {
+        int[] cells = new int[boxPositions.size()];
+        int n = 0;
+        for (int[] box : boxPositions.values()) {
+            cells[n++] = level.cell(box[0], box[1]);
+        }
+        Arrays.sort(cells);
+        return cells;
+    }
+
+    // Any two boxes that the pattern database says can never both reach goals.
+    private int[] unsolvablePair() {
+        PatternDatabase database = level.patternDatabase();
+        if (database == null)
+            return null;
+        List<int[]> boxes = new ArrayList<>(boxPositions.values());
+        for (int a = 0; a < boxes.size(); a++) {
+            for (int b = a + 1; b < boxes.size(); b++) {
+                int cellA = level.cell(boxes.get(a)[0], boxes.get(a)[1]);
+                int cellB = level.cell(boxes.get(b)[0], boxes.get(b)[1]);
+                if (database.distance(cellA, cellB) == PatternDatabase.UNSOLVABLE)
+                    return new int[]{cellA, cellB};
+            }
+        }
+        return null;
+    }
+
+    private int[] stuckGroup() {
+        Set<Integer> checkedBoxes = new HashSet<>();
+        for (int[] box : boxPositions.values()) {
+            int boxKey = Level.cantorPair(box[0], box[1]);
+            if (!checkedBoxes.contains(boxKey) && !level.isGoal(box[0], box[1])) {
+                Set<Integer> group = new HashSet<>();
+                if (dfsGroupStuck(box[0], box[1], group) && !canMoveAny(group)) {
+                    int[] cells = new int[group.size()];
+                    int n = 0;
+                    for (int key : group) {
+                        int[] pos = Level.inverseCantorPair(key);
+                        cells[n++] = level.cell(pos[0], pos[1]);
+                    }
+                    return cells;
+                }
+                checkedBoxes.addAll(group);
+            }
+        }
+        return null;
+    }
+
+    private boolean dfsGroupStuck(int bi, int bj, Set<Integer> group) {
+        int key = Level.cantorPair(bi, bj);
+        if (group.contains(key) || level.isGoal(bi, bj)) {
+            return false;
+        }
+        if (!boxPositions.containsKey(key)) {
+            return false;
+        }
+
+        group.add(key);
+
+        int[][] directions = Level.DIRECTIONS;
+        for (int[] dir : directions) {
+            int ni = bi + dir[0];
+            int nj = bj + dir[1];
+            dfsGroupStuck(ni, nj, group);
+        }
+
+        return true;
+    }
+
+    private boolean canMoveAny(Set<Integer> group) {
+        for (int key : group) {
+            int[] pos = Level.inverseCantorPair(key);
+            if (canMoveBox(pos[0], pos[1], group)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean canMoveBox(int bi, int bj, Set<Integer> group) {
+        int[][] directions = Level.DIRECTIONS;
+        for (int[] dir : directions) {
+            int ni = bi + dir[0];
+            int nj = bj + dir[1];
+            int oppositeI = bi - dir[0];
+            int oppositeJ = bj - dir[1];
+
+            if (!level.isWall(ni, nj) &&
+                    !group.contains(Level.cantorPair(ni, nj)) &&
+                    (!level.isWall(oppositeI, oppositeJ) ||
+                            level.isGoal(oppositeI, oppositeJ)) &&
+                    !group.contains(Level.cantorPair(oppositeI, oppositeJ))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBoxStuck(int bi, int bj) {
+        boolean horizontalBlocked = (isBlocked(bi, bj - 1) && isBlocked(bi, bj + 1));
+        boolean verticalBlocked = (isBlocked(bi - 1, bj) && isBlocked(bi + 1, bj));
+        return horizontalBlocked && verticalBlocked;
+    }
+
+    private boolean isBlocked(int i, int j) {
+        return level.isWall(i, j) ||
+                (boxPositions.containsKey(Level.cantorPair(i, j)) &&
+                        !level.isGoal(i, j));
+    }
+
+    // The heuristic, computed once. Only for searches that read it many times per node.
+    int h() {
+        if (h < 0)
+            h = heuristic();
+        return h;
+    }
+
+    public int heuristic() {
+        int h = level.hasPackingOrder() ? orderedHeuristic() : distanceHeuristic();
+        if (level.patternDatabase() != null)
+            h = Math.max(h, patternHeuristic(level.patternDatabase()));
+        return h;
+    }
+
+    // A cost to go that never overestimates, unlike heuristic(), whose player distance and packing
+    // order can: every box still has to be pushed at least as far as its nearest goal. The anytime
+    // search bounds its solutions with it.
+    int lowerBound() {
+        int total = 0;
+        for (int[] box : boxPositions.values()) {
+            int nearest = Integer.MAX_VALUE;
+            for (int k = 0; k < level.goalCount(); k++) {
+                int goal = level.goalInOrder(k);
+                nearest = Math.min(nearest, Math.abs(box[0] - goal / level.cols()) + Math.abs(box[1] - goal % level.cols()));
+            }
+            total += nearest;
+        }
+        if (level.patternDatabase() != null)
+            total = Math.max(total, patternHeuristic(level.patternDatabase()));
+        return total;
+    }
+
+    private int distanceHeuristic() {
+        int totalDistance = 0;
+        int minBoxDistance = Integer.MAX_VALUE;
+
+        for (Map.Entry<Integer, int[]> entry : boxPositions.entrySet()) {
+            int[] box = entry.getValue();
+            int minGoalDistance = Integer.MAX_VALUE;
+
+            for (int k = 0; k < level.goalCount(); k++) {
+                int goal = level.goalInOrder(k);
+                int distance = Math.abs(box[0] - goal / level.cols()) + Math.abs(box[1] - goal % level.cols());
+                minGoalDistance = Math.min(minGoalDistance, distance);
+            }
+
+            totalDistance += minGoalDistance;
+
+            if (!level.isGoal(box[0], box[1])) {
+                int boxDistance = Math.abs(i - box[0]) + Math.abs(j - box[1]);
+                minBoxDistance = Math.min(minBoxDistance, boxDistance);
+            }
+        }
+
+        return totalDistance + (minBoxDistance == Integer.MAX_VALUE ? 0 : minBoxDistance);
+    }
+
+    // Sums the pattern database over disjoint pairs of boxes, taken in cell order.
+    private int patternHeuristic(PatternDatabase database) {
+        int[] cells = new int[boxPositions.size()];
+        int n = 0;
+        for (int[] box : boxPositions.values()) {
+            cells[n++] = level.cell(box[0], box[1]);
+        }
+        Arrays.sort(cells);
+
+        int total = 0;
+        for (int k = 0; k + 1 < cells.length; k += 2) {
+            total += database.distance(cells[k], cells[k + 1]);
+        }
+        return total;
+    }
+
+    // Matches boxes to goals in packing order: each goal, earliest first, takes the nearest box
+    // not already taken by an earlier goal.
+    private int orderedHeuristic() {
+        int goalCount = level.goalCount();
+        List<int[]> boxes = new ArrayList<>(boxPositions.values());
+        boolean[] taken = new boolean[boxes.size()];
+        int totalDistance = 0;
+        int minBoxDistance = Integer.MAX_VALUE;
+
+        for (int k = 0; k < goalCount && k < boxes.size(); k++) {
+            int goal = level.goalInOrder(k);
+            int gi = goal / level.cols();
+            int gj = goal % level.cols();
+            int nearest = -1;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (int b = 0; b < boxes.size(); b++) {
+                int distance = Math.abs(boxes.get(b)[0] - gi) + Math.abs(boxes.get(b)[1] - gj);
+                if (!taken[b] && distance < nearestDistance) {
+                    nearest = b;
+                    nearestDistance = distance;
+                }
+            }
+            taken[nearest] = true;
+            totalDistance += nearestDistance;
+        }
+
+        for (int[] box : boxes) {
+            if (!level.isGoal(box[0], box[1])) {
+                int boxDistance = Math.abs(i - box[0]) + Math.abs(j - box[1]);
+                minBoxDistance = Math.min(minBoxDistance, boxDistance);
+            }
+        }
+
+        return totalDistance + (minBoxDistance == Integer.MAX_VALUE ? 0 : minBoxDistance);
+    }
+}
@@ -0,0 +1,123 @@
+import Sokoban.Level;
+
+import java.util.*;
+
+/**
+ * A node's boxes with one of them pushed, read through the node's own map instead of a copy. The
+ * successor generator points its probe at this view to look a push up in the closed set and
+ * check it for deadlocks before anything is allocated, and only a push that passes is copied
+ * into a child. The view never writes to the map it reads: the moved box lives in an array of
+ * its own, which {@link Node}'s constructor replaces with a fresh one in the child.
+ */
+final class PushedBoxes extends AbstractMap<Integer, int[]> {
+    private Map<Integer, int[]> boxes;
+    private int from; // the moved box's key in boxes
+    private int to;   // its key now
+    private final int[] box = new int[2];
+    private int keySum;
+    private final Set<Entry<Integer, int[]>> entries = new AbstractSet<>() {
+        @Override
+        public int size() {
+            return boxes.size();
+        }
+
+        @Override
+        public Iterator<Entry<Integer, int[]>> iterator() {
+            Iterator<Entry<Integer, int[]>> rest = boxes.entrySet().iterator();
+            return new Iterator<>() {
+                private boolean moved = true;
+                private Entry<Integer, int[]> next = advance();
+
+                private Entry<Integer, int[]> advance() {
+                    while (rest.hasNext()) {
+                        Entry<Integer, int[]> entry = rest.next();
+                        if (entry.getKey() != from)
+                            return entry;
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return moved || next != null;
+                }
+
+                @Override
+                public Entry<Integer, int[]> next() {
+                    if (moved) {
+                        moved = false;
+                        return new SimpleImmutableEntry<>(to, box);
+                    }
+                    if (next == null)
+                        throw new NoSuchElementException();
+                    Entry<Integer, int[]> entry = next;
+                    next = advance();
+                    return entry;
+                }
+            };
+        }
+    };
+
+    // Points the view at boxes, whose keys sum to boxKeySum, with the box at key from on (i, j).
+    void reset(Map<Integer, int[]> boxes, int boxKeySum, int from, int i, int j) {
+        this.boxes = boxes;
+        this.from = from;
+        this.to = from;
+        this.keySum = boxKeySum;
+        moveTo(i, j);
+    }
+
+    // Moves the pushed box on to (i, j).
+    void moveTo(int i, int j) {
+        int key = Level.cantorPair(i, j);
+        keySum += key - to;
+        to = key;
+        box[0] = i;
+        box[1] = j;
+    }
+
+    int key() {
+        return to;
+    }
+
+    int i() {
+        return box[0];
+    }
+
+    int j() {
+        return box[1];
+    }
+
+    // The sum of the box keys, as Node.boxKeySum.
+    int keySum() {
+        return keySum;
+    }
+
+    @Override
+    public int size() {
+        return boxes.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof Integer))
+            return false;
+        int k = (Integer) key;
+        return k == to || k != from && boxes.containsKey(k);
+    }
+
+    @Override
+    public int[] get(Object key) {
+        if (!(key instanceof Integer))
+            return null;
+        int k = (Integer) key;
+        if (k == to)
+            return box;
+        return k == from ? null : boxes.get(k);
+    }
+
+    @Override
+    public Set<Entry<Integer, int[]>> entrySet() {
+        return entries;
+    }
+}
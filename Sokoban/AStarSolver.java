@@ -0,0 +1,176 @@
+package Sokoban;
+
+import java.util.*;
+
+class AStarSolver {
+    final Level level;
+
+    AStarSolver(Level level) {
+        this.level = level;
+    }
+
+    class Node implements Comparable<Node> {
+        int[] sokobanPos;
+        HashMap<Integer, int[]> boxPositions;
+        int gCost; // Cost from start to this node
+        int hCost; // Heuristic cost to the goal
+        String path; // Path taken as a sequence of moves
+
+        Node(int[] sokobanPos, HashMap<Integer, int[]> boxPositions, int gCost, String path) {
+            this.sokobanPos = sokobanPos;
+            this.boxPositions = new HashMap<>(boxPositions);
+            this.gCost = gCost;
+            this.hCost = heuristic(sokobanPos, boxPositions);
+            this.path = path;
+        }
+
+        int getFCost() {
+            return gCost + hCost;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            return Integer.compare(this.getFCost(), other.getFCost());
+        }
+    }
+
+    public String solve(int[] sokobanStart, HashMap<Integer, int[]> initBoxPositions) {
+        PriorityQueue<Node> openList = new PriorityQueue<>();
+        HashSet<String> closedList = new HashSet<>();
+
+        Node startNode = new Node(sokobanStart, initBoxPositions, 0, "");
+        openList.add(startNode);
+
+        while (!openList.isEmpty()) {
+            Node currentNode = openList.poll();
+
+            if (isGoalState(currentNode.boxPositions)) {
+                return currentNode.path; // Solution found
+            }
+
+            closedList.add(encodeState(currentNode.sokobanPos, currentNode.boxPositions));
+
+            for (char move : new char[]{'U', 'D', 'L', 'R'}) {
+                int[] newSokobanPos = moveSokoban(currentNode.sokobanPos, move);
+                if (isValidMove(currentNode.sokobanPos, newSokobanPos, currentNode.boxPositions)) {
+                    HashMap<Integer, int[]> newBoxPositions = new HashMap<>(currentNode.boxPositions);
+                    updateBoxPositions(newSokobanPos, newBoxPositions, move);
+
+                    Node neighborNode = new Node(newSokobanPos, newBoxPositions, currentNode.gCost + 1, currentNode.path + move);
+
+                    if (!closedList.contains(encodeState(neighborNode.sokobanPos, neighborNode.boxPositions))) {
+                        openList.add(neighborNode);
+                    }
+                }
+            }
+        }
+        return null; // No solution found
+    }
+
+    private void updateBoxPositions(int[] newSokobanPos, HashMap<Integer, int[]> boxPositions, char move) {
+        int pair = Level.cantorPair(newSokobanPos[0], newSokobanPos[1]);
+
+        if (boxPositions.containsKey(pair)) {
+            int[] newBoxPos = moveSokoban(newSokobanPos, move);
+            int newPair = Level.cantorPair(newBoxPos[0], newBoxPos[1]);
+
+            // Update the box position
+            boxPositions.remove(pair);
+            boxPositions.put(newPair, newBoxPos);
+        }
+    }
+
+
+    private boolean isValidMove(int[] currentSokobanPos, int[] newSokobanPos, HashMap<Integer, int[]> boxPositions) {
+        int x = newSokobanPos[0];
+        int y = newSokobanPos[1];
+
+        // Check if the new position is a wall
+        if (level.isWall(x, y)) return false;
+
+        int pair = Level.cantorPair(x, y);
+
+        // Check if the new position is occupied by a box
+        if (boxPositions.containsKey(pair)) {
+            int[] newBoxPos = moveSokoban(newSokobanPos, getMoveDirection(currentSokobanPos, newSokobanPos));
+            int newPair = Level.cantorPair(newBoxPos[0], newBoxPos[1]);
+
+            // Check if the new box position is a wall or another box
+            if (level.isWall(newBoxPos[0], newBoxPos[1]) || boxPositions.containsKey(newPair)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    private char getMoveDirection(int[] oldPos, int[] newPos) {
+        if (newPos[0] < oldPos[0]) return 'U';
+        if (newPos[0] > oldPos[0]) return 'D';
+        if (newPos[1] < oldPos[1]) return 'L';
+        return 'R';
+    }
+
+
+    private int[] moveSokoban(int[] sokobanPos, char move) {
+        int[] newPos = sokobanPos.clone();
+        switch (move) {
+            case 'U':
+                newPos[0]--;
+                break; // Move up
+            case 'D':
+                newPos[0]++;
+                break; // Move down
+            case 'L':
+                newPos[1]--;
+                break; // Move left
+            case 'R':
+                newPos[1]++;
+                break; // Move right
+        }
+        return newPos;
+    }
+
+
+    private int heuristic(int[] sokobanPos, HashMap<Integer, int[]> boxPositions) {
+        int totalDistance = 0;
+        int minBoxDistance = Integer.MAX_VALUE;
+
+        for (int[] box : boxPositions.values()) {
+            int minGoalDistance = Integer.MAX_VALUE;
+
+            for (int k = 0; k < level.goalCount(); k++) {
+                int goal = level.goalInOrder(k);
+                int distance = Math.abs(box[0] - goal / level.cols()) + Math.abs(box[1] - goal % level.cols());
+                minGoalDistance = Math.min(minGoalDistance, distance);
+            }
+
+            totalDistance += minGoalDistance;
+
+            int boxDistance = Math.abs(sokobanPos[0] - box[0]) + Math.abs(sokobanPos[1] - box[1]);
+            minBoxDistance = Math.min(minBoxDistance, boxDistance);
+        }
+
+        return totalDistance + (minBoxDistance == Integer.MAX_VALUE ? 0 : minBoxDistance);
+    }
+
+    private boolean isGoalState(HashMap<Integer, int[]> boxPositions) {
+        for (int[] boxPos : boxPositions.values()) {
+            if (!level.isGoal(boxPos[0], boxPos[1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String encodeState(int[] sokobanPos, HashMap<Integer, int[]> boxPositions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(sokobanPos[0]).append(",").append(sokobanPos[1]).append(";");
+        for (int[] pos : boxPositions.values()) {
+            sb.append(pos[0]).append(",").append(pos[1]).append(";");
+        }
+        return sb.toString();
+    }
+
+}
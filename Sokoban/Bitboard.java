@@ -0,0 +1,171 @@
+package Sokoban;
+
+/**
+ * The fixed masks of one level as bitboards, and the word-parallel operations on them. Bit
+ * {@code i * cols + j} of a {@code long[]} stands for cell (i, j), so stepping up or down is a
+ * shift by {@code cols} bits and stepping left or right a shift by one, and a flood fill spreads
+ * to every neighbour of every cell in a handful of shifts, ands and ors per word.
+ * <p>
+ * Bits that a left or right shift carries over the edge of a row are cleared with the column
+ * masks, so the board does not need a wall border for the shifts to be correct.
+ * <p>
+ * The word loops run on the Vector API when the JVM has {@code jdk.incubator.vector}, and as plain
+ * loops otherwise (see {@link BitboardOps}). With {@code -Dsokoban.board=bitboard} the A* node
+ * expansion and the genetic solver's fitness simulation run on bitboards instead of their
+ * HashMap boards.
+ */
+public final class Bitboard {
+    /**
+     * True if the solvers should use bitboards, as set by {@code sokoban.board}.
+     */
+    public static final boolean SELECTED = "bitboard".equals(System.getProperty("sokoban.board"));
+    static final BitboardOps OPS = BitboardOps.load();
+
+    final int cols;
+    final int cells;
+    final int words;
+    final long[] floor;
+    final long[] goals;
+    final long[] deadSquares;
+    private final long[] notFirstColumn;
+    private final long[] notLastColumn;
+
+    public Bitboard(Level level) {
+        this.cols = level.cols();
+        this.cells = level.rows() * level.cols();
+        this.words = (cells + 63) >>> 6;
+        this.floor = new long[words];
+        this.goals = new long[words];
+        this.deadSquares = new long[words];
+        this.notFirstColumn = new long[words];
+        this.notLastColumn = new long[words];
+        for (int cell = 0; cell < cells; cell++) {
+            if (!level.isWall(cell)) set(floor, cell);
+            if (level.isGoal(cell)) set(goals, cell);
+            if (level.isDeadSquare(cell)) set(deadSquares, cell);
+            if (cell % cols != 0) set(notFirstColumn, cell);
+            if (cell % cols != cols - 1) set(notLastColumn, cell);
+        }
+    }
+
+    /**
+     * "vector" or "scalar", the implementation the word loops run on.
+     */
+    public static String ops() {
+        return OPS.name();
+    }
+
+    public long[] empty() {
+        return new long[words];
+    }
+
+    /**
+     * Writes {@code from} moved one cell in direction {@code d} (index into
+     * {@link Level#DIRECTIONS}) into {@code to}.
+     */
+    public void shift(long[] from, int d, long[] to) {
+        switch (d) {
+            case 0:
+                shiftDown(from, cols, to);
+                break;
+            case 1:
+                shiftUp(from, cols, to);
+                break;
+            case 2:
+                shiftDown(from, 1, to);
+                and(to, notLastColumn, to);
+                break;
+            default:
+                shiftUp(from, 1, to);
+                and(to, notFirstColumn, to);
+                break;
+        }
+    }
+
+    /**
+     * Fills {@code reach}, which must hold the start cells, with every cell joined to them
+     * through {@code passable}. {@code scratch} is overwritten.
+     */
+    public void flood(long[] reach, long[] passable, long[] scratch) {
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (int d = 0; d < 4; d++) {
+                shift(reach, d, scratch);
+                grew |= OPS.spread(reach, scratch, passable);
+            }
+        }
+    }
+
+    // Bit k of from lands on bit k + n of to.
+    private void shiftUp(long[] from, int n, long[] to) {
+        OPS.shiftUp(from, n >>> 6, n & 63, to);
+        clearTail(to);
+    }
+
+    // Bit k of from lands on bit k - n of to.
+    private void shiftDown(long[] from, int n, long[] to) {
+        OPS.shiftDown(from, n >>> 6, n & 63, to);
+    }
+
+    private void clearTail(long[] board) {
+        int used = cells & 63;
+        if (used != 0) board[words - 1] &= (1L << used) - 1;
+    }
+
+    public static boolean get(long[] board, int cell) {
+        return (board[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public static void set(long[] board, int cell) {
+        board[cell >>> 6] |= 1L << cell;
+    }
+
+    public static void clear(long[] board, int cell) {
+        board[cell >>> 6] &= ~(1L << cell);
+    }
+
+    public static void and(long[] a, long[] b, long[] to) {
+        OPS.and(a, b, to);
+    }
+
+    public static void andNot(long[] a, long[] b, long[] to) {
+        OPS.andNot(a, b, to);
+    }
+
+    /**
+     * True if {@code a} and {@code b} have a cell in common.
+     */
+    public static boolean intersects(long[] a, long[] b) {
+        return OPS.intersects(a, b);
+    }
+
+    /**
+     * True if every cell of {@code a} is in {@code b}.
+     */
+    public static boolean subsetOf(long[] a, long[] b) {
+        return OPS.subsetOf(a, b);
+    }
+
+    /**
+     * The first cell at or after {@code from}, or -1.
+     */
+    public static int next(long[] board, int from) {
+        int w = from >>> 6;
+        if (w >= board.length) return -1;
+        long word = board[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == board.length) return -1;
+            word = board[w];
+        }
+    }
+
+    public static int count(long[] board) {
+        int count = 0;
+        for (long word : board) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,77 @@
+package Sokoban;
+
+/**
+ * The word loops behind {@link Bitboard}. {@link #load()} picks the Vector API implementation
+ * when {@link VectorSupport} can load it and {@code sokoban.bitboard.vector} is not
+ * {@code false}, and these plain loops otherwise.
+ */
+class BitboardOps {
+    static BitboardOps load() {
+        BitboardOps vector = VectorSupport.load("sokoban.bitboard.vector", true, "Sokoban.VectorBitboardOps",
+                BitboardOps.class, new Class<?>[0]);
+        return vector != null ? vector : new BitboardOps();
+    }
+
+    String name() {
+        return "scalar";
+    }
+
+    void and(long[] a, long[] b, long[] to) {
+        for (int w = 0; w < a.length; w++) {
+            to[w] = a[w] & b[w];
+        }
+    }
+
+    void andNot(long[] a, long[] b, long[] to) {
+        for (int w = 0; w < a.length; w++) {
+            to[w] = a[w] & ~b[w];
+        }
+    }
+
+    boolean intersects(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++) {
+            if ((a[w] & b[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    boolean subsetOf(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++) {
+            if ((a[w] & ~b[w]) != 0) return false;
+        }
+        return true;
+    }
+
+    // Bit k of from lands on bit k + wordShift * 64 + bitShift of to.
+    void shiftUp(long[] from, int wordShift, int bitShift, long[] to) {
+        for (int w = to.length - 1; w >= 0; w--) {
+            int source = w - wordShift;
+            long value = source >= 0 ? from[source] << bitShift : 0;
+            if (bitShift != 0 && source - 1 >= 0) value |= from[source - 1] >>> (64 - bitShift);
+            to[w] = value;
+        }
+    }
+
+    // Bit k of from lands on bit k - wordShift * 64 - bitShift of to.
+    void shiftDown(long[] from, int wordShift, int bitShift, long[] to) {
+        for (int w = 0; w < to.length; w++) {
+            int source = w + wordShift;
+            long value = source < from.length ? from[source] >>> bitShift : 0;
+            if (bitShift != 0 && source + 1 < from.length) value |= from[source + 1] << (64 - bitShift);
+            to[w] = value;
+        }
+    }
+
+    // Adds the cells of step that are in passable to reach. Returns whether reach grew.
+    boolean spread(long[] reach, long[] step, long[] passable) {
+        boolean grew = false;
+        for (int w = 0; w < reach.length; w++) {
+            long next = reach[w] | (step[w] & passable[w]);
+            if (next != reach[w]) {
+                reach[w] = next;
+                grew = true;
+            }
+        }
+        return grew;
+    }
+}
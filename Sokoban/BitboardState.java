@@ -0,0 +1,197 @@
+package Sokoban;
+
+import java.util.*;
+
+/**
+ * A Sokoban position on bitboards: the player's cell and a {@code long[]} of box cells. It can
+ * generate the same single-step successors as the A* {@code Node}, successors by push with the
+ * player's walk flood-filled, and can step in place for the genetic solver's simulation.
+ */
+public final class BitboardState {
+    private final Bitboard board;
+    private int player;
+    private final long[] boxes;
+
+    private BitboardState(Bitboard board, int player, long[] boxes) {
+        this.board = board;
+        this.player = player;
+        this.boxes = boxes;
+    }
+
+    public static BitboardState initial(Level level, Bitboard board) {
+        long[] boxes = board.empty();
+        for (int[] box : level.initBoxPositions().values()) {
+            Bitboard.set(boxes, level.cell(box[0], box[1]));
+        }
+        int[] sokoban = level.sokoban();
+        return new BitboardState(board, level.cell(sokoban[0], sokoban[1]), boxes);
+    }
+
+    /**
+     * A state with the player on {@code player} and boxes on {@code boxCells}.
+     */
+    public static BitboardState of(Bitboard board, int player, Collection<Integer> boxCells) {
+        long[] boxes = board.empty();
+        for (int cell : boxCells) {
+            Bitboard.set(boxes, cell);
+        }
+        return new BitboardState(board, player, boxes);
+    }
+
+    /**
+     * A state with the player on {@code player} and boxes on {@code boxCells}.
+     */
+    public static BitboardState of(Bitboard board, int player, int[] boxCells) {
+        long[] boxes = board.empty();
+        for (int cell : boxCells) {
+            Bitboard.set(boxes, cell);
+        }
+        return new BitboardState(board, player, boxes);
+    }
+
+    public BitboardState copy() {
+        return new BitboardState(board, player, boxes.clone());
+    }
+
+    public int player() {
+        return player;
+    }
+
+    public boolean hasBox(int cell) {
+        return Bitboard.get(boxes, cell);
+    }
+
+    /**
+     * The box cells themselves, not a copy; read them with {@link Bitboard#next}.
+     */
+    long[] boxes() {
+        return boxes;
+    }
+
+    public boolean isSolved() {
+        return Bitboard.subsetOf(boxes, board.goals);
+    }
+
+    public int placedBoxes() {
+        int placed = 0;
+        for (int w = 0; w < boxes.length; w++) {
+            placed += Long.bitCount(boxes[w] & board.goals[w]);
+        }
+        return placed;
+    }
+
+    /**
+     * True if a box stands on a square from which no goal can be reached.
+     */
+    public boolean hasDeadBox() {
+        return Bitboard.intersects(boxes, board.deadSquares);
+    }
+
+    /**
+     * Moves the player one step in direction {@code d}, pushing a box if there is one. Returns
+     * false, leaving the state as it was, if the step runs into a wall or the box is blocked.
+     */
+    public boolean move(int d) {
+        int next = neighbour(player, d);
+        if (next == -1) return false;
+        if (Bitboard.get(boxes, next)) {
+            int beyond = neighbour(next, d);
+            if (beyond == -1 || Bitboard.get(boxes, beyond)) return false;
+            Bitboard.clear(boxes, next);
+            Bitboard.set(boxes, beyond);
+        }
+        player = next;
+        return true;
+    }
+
+    /**
+     * The states one step away, in the order of {@link Level#DIRECTIONS}, as
+     * {@code Node.children()} generates them without its macro pushes.
+     */
+    public List<BitboardState> children() {
+        List<BitboardState> children = new ArrayList<>(4);
+        for (int d = 0; d < 4; d++) {
+            BitboardState child = copy();
+            if (child.move(d)) children.add(child);
+        }
+        return children;
+    }
+
+    /**
+     * The cells the player can walk to without pushing.
+     */
+    public long[] reachable() {
+        long[] reach = board.empty();
+        Bitboard.set(reach, player);
+        long[] passable = board.empty();
+        Bitboard.andNot(board.floor, boxes, passable);
+        board.flood(reach, passable, board.empty());
+        return reach;
+    }
+
+    /**
+     * The states one push away, with the player left where the push ends. Pushes onto dead
+     * squares are left out. All pushes in one direction are found at once: the boxes with a
+     * reachable cell behind them and free floor beyond them.
+     */
+    public List<BitboardState> pushes() {
+        long[] reach = reachable();
+        long[] free = board.empty();
+        Bitboard.andNot(board.floor, boxes, free);
+        Bitboard.andNot(free, board.deadSquares, free);
+
+        List<BitboardState> pushes = new ArrayList<>();
+        long[] behind = board.empty();
+        long[] beyond = board.empty();
+        long[] movable = board.empty();
+        for (int d = 0; d < 4; d++) {
+            // Boxes whose cell behind (against d) is reachable, and whose cell ahead is free.
+            board.shift(reach, d, behind);
+            board.shift(free, d ^ 1, beyond);
+            for (int w = 0; w < movable.length; w++) {
+                movable[w] = boxes[w] & behind[w] & beyond[w];
+            }
+            for (int box = Bitboard.next(movable, 0); box != -1; box = Bitboard.next(movable, box + 1)) {
+                long[] moved = boxes.clone();
+                Bitboard.clear(moved, box);
+                Bitboard.set(moved, neighbour(box, d));
+                pushes.add(new BitboardState(board, box, moved));
+            }
+        }
+        return pushes;
+    }
+
+    private int neighbour(int cell, int d) {
+        int next;
+        switch (d) {
+            case 0:
+                next = cell - board.cols;
+                break;
+            case 1:
+                next = cell + board.cols;
+                break;
+            case 2:
+                if (cell % board.cols == 0) return -1;
+                next = cell - 1;
+                break;
+            default:
+                if (cell % board.cols == board.cols - 1) return -1;
+                next = cell + 1;
+                break;
+        }
+        return next >= 0 && next < board.cells && Bitboard.get(board.floor, next) ? next : -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BitboardState)) return false;
+        BitboardState state = (BitboardState) o;
+        return player == state.player && Arrays.equals(boxes, state.boxes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * player + Arrays.hashCode(boxes);
+    }
+}
@@ -0,0 +1,78 @@
+package Sokoban;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Box configurations proven dead on one layout: sets of box cells that can never all reach goals,
+ * whatever the other boxes and the player do. A state that has a box on every cell of a pattern
+ * can be pruned. Patterns are indexed by their lowest cell, so a lookup only looks at patterns
+ * anchored on a cell that holds a box.
+ * <p>
+ * Safe for concurrent solves of levels that share the layout.
+ */
+public final class DeadlockPatterns {
+    private final Map<Integer, List<int[]>> byFirstCell = new ConcurrentHashMap<>();
+    private final Set<List<Integer>> known = ConcurrentHashMap.newKeySet();
+    private final List<int[]> unsaved = new ArrayList<>();
+
+    /**
+     * Adds a pattern of board cells. Returns false if it was already known.
+     */
+    public boolean add(int[] cells) {
+        int[] pattern = insert(cells);
+        if (pattern == null) return false;
+        synchronized (unsaved) {
+            unsaved.add(pattern);
+        }
+        return true;
+    }
+
+    // Adds a pattern read back from the store, which therefore needs no saving.
+    int[] insert(int[] cells) {
+        int[] pattern = cells.clone();
+        Arrays.sort(pattern);
+        List<Integer> key = new ArrayList<>(pattern.length);
+        for (int cell : pattern) {
+            key.add(cell);
+        }
+        if (!known.add(key)) return null;
+        byFirstCell.computeIfAbsent(pattern[0], c -> new CopyOnWriteArrayList<>()).add(pattern);
+        return pattern;
+    }
+
+    /**
+     * Returns a pattern fully covered by {@code boxCells}, which must be sorted, or null.
+     */
+    public int[] find(int[] boxCells) {
+        for (int cell : boxCells) {
+            List<int[]> patterns = byFirstCell.get(cell);
+            if (patterns == null) continue;
+            for (int[] pattern : patterns) {
+                if (coveredBy(pattern, boxCells)) return pattern;
+            }
+        }
+        return null;
+    }
+
+    private static boolean coveredBy(int[] pattern, int[] boxCells) {
+        for (int k = 1; k < pattern.length; k++) {
+            if (Arrays.binarySearch(boxCells, pattern[k]) < 0) return false;
+        }
+        return true;
+    }
+
+    public int size() {
+        return known.size();
+    }
+
+    // Hands over the patterns added since the last call, for the store to append.
+    List<int[]> drainUnsaved() {
+        synchronized (unsaved) {
+            List<int[]> patterns = new ArrayList<>(unsaved);
+            unsaved.clear();
+            return patterns;
+        }
+    }
+}
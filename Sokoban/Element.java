@@ -0,0 +1,26 @@
+package Sokoban;
+
+class Element {
+    char[] dna;
+    double fitness;
+
+    public Element(Element e) {
+        this.dna = new char[e.dna.length];
+        System.arraycopy(e.dna, 0, this.dna, 0, dna.length);
+        this.fitness = e.fitness;
+    }
+
+    public Element(char[] dna) {
+        this.dna = dna;
+    }
+
+    public static Element getRandom(int dnaLength) {
+        char[] dir = {'U', 'D', 'L', 'R'};
+        char[] dna = new char[dnaLength];
+
+        for (int i = 0; i < dnaLength; i++) {
+            dna[i] = dir[(int) (Math.random() * 4)];
+        }
+        return new Element(dna);
+    }
+}
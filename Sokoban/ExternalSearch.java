@@ -0,0 +1,433 @@
+package Sokoban;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Breadth-first search over pushes that keeps its frontier on disk, for levels whose state space
+ * is too big for a {@code HashSet<Node>}, e.g. to prove that one has no solution.
+ * <p>
+ * A state is packed as big-endian shorts: the lowest cell the player can walk to, then the box
+ * cells in ascending order, so comparing the bytes orders states. Successors of a layer are
+ * collected in a fixed buffer; each time it fills up it is sorted and written out as a run file.
+ * When the layer is done the runs are merged in one streaming pass that drops repeats and any
+ * state already in an earlier layer, read side by side from those layers' sorted files. Only
+ * the buffer, one write buffer and one read buffer are ever held in memory: every file open for
+ * reading gets its own slice of the read buffer, however many layers there are.
+ * <p>
+ * Cells are packed into 16 bits, so boards are limited to 65536 cells.
+ * <p>
+ * Usage: {@code java Sokoban.ExternalSearch <levels-file> [level number] [work dir] [buffer states]}
+ */
+public final class ExternalSearch {
+    private static final int IO_BUFFER = 1 << 20;
+    private static final int MAX_CELLS = 1 << 16;
+
+    private final Level level;
+    private final Path dir;
+    private final int bufferStates;
+    private final int recordSize;
+    private final ByteBuffer writeBuffer;
+    private ByteBuffer readBuffer;
+
+    final SolverMetrics metrics = new SolverMetrics("external");
+    private final LongAdder expanded = metrics.counter("expanded");
+    private final LongAdder generated = metrics.counter("generated");
+    private final LongAdder bytesWritten = metrics.counter("bytesWritten");
+    private final SolverMetrics.Gauge depth = metrics.gauge("depth");
+    private final SolverMetrics.Gauge layerSize = metrics.gauge("layerSize");
+
+    public ExternalSearch(Level level, Path dir, int bufferStates) {
+        if ((long) level.rows() * level.cols() > MAX_CELLS) {
+            throw new IllegalArgumentException("Cells are packed into 16 bits; a " + level.rows() + "x"
+                    + level.cols() + " board has more than " + MAX_CELLS);
+        }
+        this.level = level;
+        this.dir = dir;
+        this.bufferStates = bufferStates;
+        this.recordSize = 2 * (1 + level.boxCount());
+        this.writeBuffer = ByteBuffer.allocateDirect(IO_BUFFER - IO_BUFFER % recordSize);
+        this.readBuffer = ByteBuffer.allocateDirect(IO_BUFFER - IO_BUFFER % recordSize);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Level> levels = Level.load(Path.of(args[0]));
+        int index = args.length > 1 ? Integer.parseInt(args[1]) - 1 : 0;
+        Path dir = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("sokoban-bfs");
+        int bufferStates = args.length > 3 ? Integer.parseInt(args[3]) : 1 << 20;
+
+        Result result = new ExternalSearch(levels.get(index), dir, bufferStates).run();
+        if (result.solvedDepth >= 0) {
+            System.out.printf("Solved in %d pushes.%n", result.solvedDepth);
+        } else {
+            System.out.printf("No solution: all %d reachable states searched.%n", result.states);
+        }
+        System.out.printf("%d states in %.1f s, %.0f states/s%n",
+                result.states, result.seconds, result.states / Math.max(result.seconds, 1e-9));
+    }
+
+    /**
+     * Outcome of one search: the fewest pushes that solve the level, or -1 if the whole reachable
+     * state space was searched without a solution.
+     */
+    public static final class Result {
+        public final int solvedDepth;
+        public final long states;
+        public final double seconds;
+
+        Result(int solvedDepth, long states, double seconds) {
+            this.solvedDepth = solvedDepth;
+            this.states = states;
+            this.seconds = seconds;
+        }
+    }
+
+    public Result run() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        List<Path> layers = new ArrayList<>();
+        long states = 0;
+
+        int[] sokoban = level.sokoban();
+        boolean[] boxes = new boolean[level.rows() * level.cols()];
+        for (int[] box : level.initBoxPositions().values()) {
+            boxes[level.cell(box[0], box[1])] = true;
+        }
+        byte[] initial = new byte[recordSize];
+        int player = lowestReachable(level.cell(sokoban[0], sokoban[1]), boxes, new boolean[boxes.length], new int[boxes.length]);
+        pack(player, boxes, initial, 0);
+
+        metrics.start();
+        try {
+            if (solved(boxes)) {
+                return new Result(0, 1, (System.nanoTime() - start) / 1e9);
+            }
+            Path first = layerFile(0);
+            try (RecordWriter writer = new RecordWriter(first)) {
+                writer.write(initial, 0);
+            }
+            layers.add(first);
+            states++;
+
+            byte[] buffer = new byte[bufferStates * recordSize];
+            for (int d = 0; ; d++) {
+                depth.set(d);
+                List<Path> runs = new ArrayList<>();
+                long count;
+                Path next = layerFile(d + 1);
+                try {
+                    if (expandLayer(layers.get(d), d, buffer, runs)) {
+                        return new Result(d + 1, states, (System.nanoTime() - start) / 1e9);
+                    }
+                    count = mergeRuns(runs, layers, next);
+                } finally {
+                    for (Path run : runs) {
+                        Files.deleteIfExists(run);
+                    }
+                }
+                layerSize.set(count);
+                if (count == 0) {
+                    Files.deleteIfExists(next);
+                    return new Result(-1, states, (System.nanoTime() - start) / 1e9);
+                }
+                layers.add(next);
+                states += count;
+            }
+        } finally {
+            metrics.stop();
+            for (Path layer : layers) {
+                Files.deleteIfExists(layer);
+            }
+        }
+    }
+
+    private Path layerFile(int d) {
+        return dir.resolve("layer-" + d + ".bin");
+    }
+
+    // Streams one layer, writing its successors into sorted runs. Returns true as soon as one of
+    // them is solved.
+    private boolean expandLayer(Path layer, int d, byte[] buffer, List<Path> runs) throws IOException {
+        int cells = level.rows() * level.cols();
+        byte[] state = new byte[recordSize];
+        int buffered = 0;
+        boolean[] boxes = new boolean[cells];
+        boolean[] reachable = new boolean[cells];
+        boolean[] scratch = new boolean[cells];
+        int[] queue = new int[cells];
+        int[] boxCells = new int[recordSize / 2 - 1];
+
+        try (RecordReader reader = new RecordReader(layer, readSlices(1)[0])) {
+            while (reader.next(state)) {
+                expanded.increment();
+                int player = unpack(state, boxes, boxCells);
+                reach(player, boxes, reachable, queue);
+
+                for (int box : boxCells) {
+                    for (int dir = 0; dir < 4; dir++) {
+                        int behind = level.neighbour(box, dir ^ 1);
+                        int beyond = level.neighbour(box, dir);
+                        if (behind == -1 || beyond == -1 || !reachable[behind] || boxes[beyond] || level.isDeadSquare(beyond))
+                            continue;
+
+                        boxes[box] = false;
+                        boxes[beyond] = true;
+                        generated.increment();
+                        if (solved(boxes))
+                            return true;
+                        pack(lowestReachable(box, boxes, scratch, queue), boxes, buffer, buffered * recordSize);
+                        boxes[beyond] = false;
+                        boxes[box] = true;
+
+                        if (++buffered == bufferStates) {
+                            runs.add(writeRun(buffer, buffered, d + 1, runs.size()));
+                            buffered = 0;
+                        }
+                    }
+                }
+            }
+        }
+        if (buffered > 0) {
+            runs.add(writeRun(buffer, buffered, d + 1, runs.size()));
+        }
+        return false;
+    }
+
+    // Sorts the buffered states and writes them without repeats.
+    private Path writeRun(byte[] buffer, int count, int d, int number) throws IOException {
+        int[] order = new int[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = k;
+        }
+        sort(buffer, order, new int[count], 0, count);
+
+        Path run = dir.resolve("run-" + d + "-" + number + ".bin");
+        try (RecordWriter writer = new RecordWriter(run)) {
+            int previous = -1;
+            for (int k : order) {
+                if (previous == -1 || compare(buffer, previous, buffer, k) != 0) {
+                    writer.write(buffer, k * recordSize);
+                    previous = k;
+                }
+            }
+        }
+        return run;
+    }
+
+    // Merges the sorted runs into the next layer, dropping repeats and every state found in an
+    // earlier layer. Returns the number of states written.
+    private long mergeRuns(List<Path> runs, List<Path> layers, Path next) throws IOException {
+        List<RecordReader> readers = new ArrayList<>();
+        List<RecordReader> earlier = new ArrayList<>();
+        ByteBuffer[] slices = readSlices(runs.size() + layers.size());
+        try (RecordWriter writer = new RecordWriter(next)) {
+            PriorityQueue<RecordReader> heads = new PriorityQueue<>((a, b) -> compare(a.current, 0, b.current, 0));
+            for (Path run : runs) {
+                RecordReader reader = new RecordReader(run, slices[readers.size()]);
+                readers.add(reader);
+                if (reader.advance()) heads.add(reader);
+            }
+            for (Path layer : layers) {
+                RecordReader reader = new RecordReader(layer, slices[readers.size() + earlier.size()]);
+                earlier.add(reader);
+                reader.advance();
+            }
+
+            byte[] last = null;
+            long count = 0;
+            while (!heads.isEmpty()) {
+                RecordReader head = heads.poll();
+                byte[] state = head.current.clone();
+                if (head.advance()) heads.add(head);
+                if (last != null && compare(last, 0, state, 0) == 0)
+                    continue;
+                last = state;
+                if (!seenBefore(earlier, state)) {
+                    writer.write(state, 0);
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            for (RecordReader reader : readers) reader.close();
+            for (RecordReader reader : earlier) reader.close();
+        }
+    }
+
+    // Moves every earlier layer's cursor up to the state, which arrives in ascending order.
+    private boolean seenBefore(List<RecordReader> earlier, byte[] state) throws IOException {
+        boolean seen = false;
+        for (RecordReader reader : earlier) {
+            while (!reader.done && compare(reader.current, 0, state, 0) < 0) {
+                reader.advance();
+            }
+            if (!reader.done && compare(reader.current, 0, state, 0) == 0) seen = true;
+        }
+        return seen;
+    }
+
+    // Splits the read buffer evenly between files read side by side, each slice a whole number of
+    // records. The buffer only grows if there are more files than records fit in it.
+    private ByteBuffer[] readSlices(int files) {
+        int records = readBuffer.capacity() / recordSize / files;
+        if (records == 0) {
+            readBuffer = ByteBuffer.allocateDirect(files * recordSize);
+            records = 1;
+        }
+        ByteBuffer[] slices = new ByteBuffer[files];
+        for (int k = 0; k < files; k++) {
+            slices[k] = readBuffer.slice(k * records * recordSize, records * recordSize);
+        }
+        return slices;
+    }
+
+    private int compare(byte[] a, int aFrom, byte[] b, int bFrom) {
+        return Arrays.compareUnsigned(a, aFrom, aFrom + recordSize, b, bFrom, bFrom + recordSize);
+    }
+
+    // Merge sort of record indices, so the records themselves never move.
+    private void sort(byte[] buffer, int[] order, int[] scratch, int from, int to) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sort(buffer, order, scratch, from, mid);
+        sort(buffer, order, scratch, mid, to);
+        int a = from, b = mid, k = from;
+        while (a < mid && b < to) {
+            scratch[k++] = compare(buffer, order[a] * recordSize, buffer, order[b] * recordSize) <= 0 ? order[a++] : order[b++];
+        }
+        while (a < mid) scratch[k++] = order[a++];
+        while (b < to) scratch[k++] = order[b++];
+        System.arraycopy(scratch, from, order, from, to - from);
+    }
+
+    private void pack(int player, boolean[] boxes, byte[] out, int offset) {
+        out[offset++] = (byte) (player >>> 8);
+        out[offset++] = (byte) player;
+        for (int cell = 0; cell < boxes.length; cell++) {
+            if (boxes[cell]) {
+                out[offset++] = (byte) (cell >>> 8);
+                out[offset++] = (byte) cell;
+            }
+        }
+    }
+
+    private int unpack(byte[] state, boolean[] boxes, int[] boxCells) {
+        Arrays.fill(boxes, false);
+        for (int k = 0; k < boxCells.length; k++) {
+            int cell = ((state[2 + 2 * k] & 0xFF) << 8) | (state[3 + 2 * k] & 0xFF);
+            boxCells[k] = cell;
+            boxes[cell] = true;
+        }
+        return ((state[0] & 0xFF) << 8) | (state[1] & 0xFF);
+    }
+
+    private void reach(int player, boolean[] boxes, boolean[] reachable, int[] queue) {
+        Arrays.fill(reachable, false);
+        int head = 0, tail = 0;
+        reachable[player] = true;
+        queue[tail++] = player;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int next = level.neighbour(cell, d);
+                if (next != -1 && !boxes[next] && !reachable[next]) {
+                    reachable[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    private int lowestReachable(int player, boolean[] boxes, boolean[] reachable, int[] queue) {
+        reach(player, boxes, reachable, queue);
+        for (int cell = 0; cell < reachable.length; cell++) {
+            if (reachable[cell]) return cell;
+        }
+        return player;
+    }
+
+    private boolean solved(boolean[] boxes) {
+        for (int cell = 0; cell < boxes.length; cell++) {
+            if (boxes[cell] && !level.isGoal(cell)) return false;
+        }
+        return true;
+    }
+
+    // Buffered sequential writer of fixed-size records. Files are written one at a time, so every
+    // writer uses the search's one write buffer.
+    private final class RecordWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = writeBuffer;
+
+        RecordWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.clear();
+        }
+
+        void write(byte[] record, int offset) throws IOException {
+            if (buffer.remaining() < recordSize) flush();
+            buffer.put(record, offset, recordSize);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten.add(channel.write(buffer));
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    // Buffered sequential reader of fixed-size records, over a slice of the read buffer; current
+    // holds the last one read.
+    private final class RecordReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        final byte[] current = new byte[recordSize];
+        boolean done;
+
+        RecordReader(Path file, ByteBuffer buffer) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.buffer = buffer;
+            buffer.limit(0);
+        }
+
+        boolean advance() throws IOException {
+            done = !next(current);
+            return !done;
+        }
+
+        boolean next(byte[] record) throws IOException {
+            if (buffer.remaining() < recordSize) {
+                buffer.compact();
+                while (buffer.position() < recordSize && channel.read(buffer) >= 0) {
+                    // keep reading until a whole record is in or the file ends
+                }
+                buffer.flip();
+                if (buffer.remaining() == 0) return false;
+                if (buffer.remaining() < recordSize) throw new EOFException("Truncated record");
+            }
+            buffer.get(record);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
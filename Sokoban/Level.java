@@ -0,0 +1,675 @@
+package Sokoban;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Immutable description of one Sokoban level. Everything a solver needs to read about the board
+ * (walls, goals, neighbour cells, start position) is precomputed here once, so any number of
+ * solves may share the same instance across threads. Positions are handed out as copies, arrays
+ * included, so no caller can move a box or goal for the others.
+ */
+public final class Level {
+    public static final int[][] DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    public static final char[] MOVES = {'U', 'D', 'L', 'R'};
+
+    private final int rows;
+    private final int cols;
+    private final boolean[] walls;
+    private final boolean[] goals;
+    private final int[] neighbours;
+    private final byte[] tunnels;
+    private final boolean[] deadSquares;
+    private final int[] goalRooms;
+    private final int[] roomEntrances;
+    private final int[][] roomGoals;
+    private final int[] goalRanks;
+    private final int[] goalOrder;
+    private final Map<Integer, int[]> goalPositions;
+    private final Map<Integer, int[]> initBoxPositions;
+    private final int[] sokoban;
+    private final PatternDatabase patternDatabase;
+    private final DeadlockPatterns deadlockPatterns;
+    // Built on first use; a race only builds the same masks twice.
+    private volatile Bitboard bitboard;
+
+    /**
+     * Builds a level from the board format used throughout this project:
+     * 'X' wall, '.' floor, '#' box, 'E' goal, 'S' start.
+     */
+    public Level(char[][] board) {
+        this.rows = board.length;
+        int width = 0;
+        for (char[] row : board) {
+            width = Math.max(width, row.length);
+        }
+        this.cols = width;
+
+        this.walls = new boolean[rows * cols];
+        this.goals = new boolean[rows * cols];
+        HashMap<Integer, int[]> goalPositions = new HashMap<>();
+        HashMap<Integer, int[]> boxPositions = new HashMap<>();
+        int[] sokoban = {-1, -1};
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                char c = j < board[i].length ? board[i][j] : 'X';
+                switch (c) {
+                    case 'X':
+                        walls[i * cols + j] = true;
+                        break;
+                    case 'E':
+                        goals[i * cols + j] = true;
+                        goalPositions.put(cantorPair(i, j), new int[]{i, j});
+                        break;
+                    case '#':
+                        boxPositions.put(cantorPair(i, j), new int[]{i, j});
+                        break;
+                    case 'S':
+                        sokoban = new int[]{i, j};
+                        break;
+                }
+            }
+        }
+
+        this.goalPositions = Collections.unmodifiableMap(goalPositions);
+        this.initBoxPositions = Collections.unmodifiableMap(boxPositions);
+        this.sokoban = sokoban;
+        this.patternDatabase = null;
+        this.deadlockPatterns = null;
+
+        this.neighbours = new int[rows * cols * 4];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                for (int d = 0; d < 4; d++) {
+                    int ni = i + DIRECTIONS[d][0];
+                    int nj = j + DIRECTIONS[d][1];
+                    neighbours[(i * cols + j) * 4 + d] = isWall(ni, nj) ? -1 : ni * cols + nj;
+                }
+            }
+        }
+
+        // A box on a dead square can never reach any goal, whatever the other boxes do. The live
+        // squares are those a box can be pulled to from some goal.
+        this.deadSquares = new boolean[rows * cols];
+        Arrays.fill(deadSquares, true);
+        Deque<Integer> pulled = new ArrayDeque<>();
+        for (int cell = 0; cell < rows * cols; cell++) {
+            if (goals[cell]) {
+                deadSquares[cell] = false;
+                pulled.add(cell);
+            }
+        }
+        while (!pulled.isEmpty()) {
+            int cell = pulled.poll();
+            for (int d = 0; d < 4; d++) {
+                int from = neighbours[cell * 4 + d];
+                if (from != -1 && deadSquares[from] && neighbours[from * 4 + d] != -1) {
+                    deadSquares[from] = false;
+                    pulled.add(from);
+                }
+            }
+        }
+
+        // A tunnel cell along an axis has walls on both sides across that axis, so a box pushed
+        // into it can only carry on or come back.
+        this.tunnels = new byte[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (isWall(i, j)) continue;
+                if (isWall(i, j - 1) && isWall(i, j + 1)) tunnels[i * cols + j] |= 1;
+                if (isWall(i - 1, j) && isWall(i + 1, j)) tunnels[i * cols + j] |= 2;
+            }
+        }
+
+        // A goal room is a connected group of goals that the rest of the level reaches through a
+        // single entrance cell. Its goals are kept deepest first, the order they have to be filled.
+        this.goalRooms = new int[rows * cols];
+        Arrays.fill(goalRooms, -1);
+        List<Integer> entrances = new ArrayList<>();
+        List<int[]> roomGoals = new ArrayList<>();
+        for (int start = 0; start < rows * cols; start++) {
+            if (!goals[start] || goalRooms[start] != -1) continue;
+
+            List<Integer> component = new ArrayList<>();
+            Set<Integer> exits = new HashSet<>();
+            Deque<Integer> queue = new ArrayDeque<>();
+            goalRooms[start] = -2;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int cell = queue.poll();
+                component.add(cell);
+                for (int d = 0; d < 4; d++) {
+                    int next = neighbours[cell * 4 + d];
+                    if (next == -1) continue;
+                    if (!goals[next]) {
+                        exits.add(next);
+                    } else if (goalRooms[next] == -1) {
+                        goalRooms[next] = -2;
+                        queue.add(next);
+                    }
+                }
+            }
+
+            if (exits.size() != 1) {
+                for (int cell : component) goalRooms[cell] = -3;
+                continue;
+            }
+
+            int entrance = exits.iterator().next();
+            int room = entrances.size();
+            int[] distance = new int[rows * cols];
+            Arrays.fill(distance, -1);
+            distance[entrance] = 0;
+            queue.add(entrance);
+            while (!queue.isEmpty()) {
+                int cell = queue.poll();
+                for (int d = 0; d < 4; d++) {
+                    int next = neighbours[cell * 4 + d];
+                    if (next != -1 && goals[next] && distance[next] == -1) {
+                        distance[next] = distance[cell] + 1;
+                        queue.add(next);
+                    }
+                }
+            }
+            component.sort((a, b) -> distance[b] - distance[a]);
+            for (int cell : component) goalRooms[cell] = room;
+            entrances.add(entrance);
+            roomGoals.add(component.stream().mapToInt(Integer::intValue).toArray());
+        }
+        for (int cell = 0; cell < rows * cols; cell++) {
+            if (goalRooms[cell] < 0) goalRooms[cell] = -1;
+        }
+        this.roomEntrances = entrances.stream().mapToInt(Integer::intValue).toArray();
+        this.roomGoals = roomGoals.toArray(new int[0][]);
+
+        this.goalRanks = new int[rows * cols];
+        this.goalOrder = packingOrder(goalRanks);
+    }
+
+    // Works out an order to fill the goals in by searching backwards from the solved position:
+    // with every goal filled, the goals whose box can still be pulled off the goal area are the
+    // ones that can be filled last. They are emptied and the search repeats on the rest. Each goal
+    // gets the round it was emptied in, counted from the first goal to fill, so a goal must only
+    // be filled once every goal of a lower rank is. If some goals can never be emptied the order
+    // is not trusted and every goal keeps rank 0.
+    private int[] packingOrder(int[] ranks) {
+        Arrays.fill(ranks, -1);
+        List<Integer> remaining = new ArrayList<>();
+        for (int cell = 0; cell < rows * cols; cell++) {
+            if (goals[cell]) remaining.add(cell);
+        }
+
+        boolean[] filled = goals.clone();
+        List<List<Integer>> rounds = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            List<Integer> last = new ArrayList<>();
+            for (int goal : remaining) {
+                if (canLeaveGoalArea(goal, filled)) last.add(goal);
+            }
+            if (last.isEmpty()) {
+                rounds.clear();
+                rounds.add(new ArrayList<>());
+                for (int cell = 0; cell < rows * cols; cell++) {
+                    if (goals[cell]) rounds.get(0).add(cell);
+                }
+                break;
+            }
+            for (int goal : last) filled[goal] = false;
+            remaining.removeAll(last);
+            rounds.add(last);
+        }
+
+        int[] order = new int[goalPositions.size()];
+        int next = 0;
+        for (int round = rounds.size() - 1; round >= 0; round--) {
+            for (int goal : rounds.get(round)) {
+                ranks[goal] = rounds.size() - 1 - round;
+                order[next++] = goal;
+            }
+        }
+        return order;
+    }
+
+    // True if a box on goal can be pulled onto a non-goal cell while the filled goals hold boxes.
+    private boolean canLeaveGoalArea(int goal, boolean[] filled) {
+        int cells = rows * cols;
+        Set<Long> seen = new HashSet<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        for (int d = 0; d < 4; d++) {
+            int player = neighbours[goal * 4 + d];
+            if (player != -1 && !filled[player]) {
+                long state = (long) goal * cells + player;
+                seen.add(state);
+                queue.add(state);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            long state = queue.poll();
+            int box = (int) (state / cells);
+            int player = (int) (state % cells);
+            if (!goals[box]) return true;
+
+            for (int d = 0; d < 4; d++) {
+                int next = neighbours[player * 4 + d];
+                if (next == -1 || next == box || (filled[next] && next != goal)) continue;
+                long walked = (long) box * cells + next;
+                if (seen.add(walked)) queue.add(walked);
+                // Walking away from a box directly behind the player pulls it along.
+                if (neighbours[player * 4 + (d ^ 1)] == box) {
+                    long pulled = (long) player * cells + next;
+                    if (seen.add(pulled)) queue.add(pulled);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a level written in the standard (XSB) text format:
+     * '#' wall, ' ' floor, '$' box, '.' goal, '@' player, '*' box on goal, '+' player on goal.
+     * Floor outside the walls is turned into wall so every cell a solver can touch is enclosed.
+     */
+    public static Level parse(List<String> lines) {
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, line.length());
+        }
+
+        char[][] board = new char[lines.size()][width];
+        List<int[]> boxesOnGoals = new ArrayList<>();
+        int[] start = null;
+        boolean startOnGoal = false;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            for (int j = 0; j < width; j++) {
+                char c = j < line.length() ? line.charAt(j) : ' ';
+                switch (c) {
+                    case '#':
+                        board[i][j] = 'X';
+                        break;
+                    case '$':
+                        board[i][j] = '#';
+                        break;
+                    case '.':
+                        board[i][j] = 'E';
+                        break;
+                    case '*':
+                        board[i][j] = 'E';
+                        boxesOnGoals.add(new int[]{i, j});
+                        break;
+                    case '@':
+                        board[i][j] = 'S';
+                        start = new int[]{i, j};
+                        break;
+                    case '+':
+                        board[i][j] = 'E';
+                        start = new int[]{i, j};
+                        startOnGoal = true;
+                        break;
+                    case ' ':
+                    case '-':
+                    case '_':
+                        board[i][j] = '.';
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unexpected character '" + c + "' at " + i + "," + j);
+                }
+            }
+        }
+        if (start == null) {
+            throw new IllegalArgumentException("Level has no player");
+        }
+
+        // Anything the player cannot reach (walking through boxes) lies outside the level.
+        boolean[][] inside = new boolean[board.length][width];
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(start);
+        inside[start[0]][start[1]] = true;
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            for (int[] dir : DIRECTIONS) {
+                int ni = cell[0] + dir[0];
+                int nj = cell[1] + dir[1];
+                if (ni < 0 || nj < 0 || ni >= board.length || nj >= width) {
+                    throw new IllegalArgumentException("Level is not enclosed by walls");
+                }
+                if (!inside[ni][nj] && board[ni][nj] != 'X') {
+                    inside[ni][nj] = true;
+                    queue.add(new int[]{ni, nj});
+                }
+            }
+        }
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < width; j++) {
+                if (!inside[i][j]) board[i][j] = 'X';
+            }
+        }
+
+        Level level = new Level(board);
+        if (boxesOnGoals.isEmpty() && !startOnGoal) {
+            return level;
+        }
+        return level.with(boxesOnGoals, startOnGoal ? start : null);
+    }
+
+    /**
+     * Reads every level from a text file in the standard format. Levels are separated by blank
+     * lines; lines starting with ';' and lines without any wall are treated as titles or comments.
+     */
+    public static List<Level> load(Path path) throws IOException {
+        List<Level> levels = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            if (line.indexOf('#') < 0 || line.startsWith(";")) {
+                if (!current.isEmpty()) {
+                    levels.add(parse(current));
+                    current = new ArrayList<>();
+                }
+            } else {
+                current.add(line);
+            }
+        }
+        if (!current.isEmpty()) {
+            levels.add(parse(current));
+        }
+        return levels;
+    }
+
+    /**
+     * Writes the level in the standard (XSB) text format read by {@link #parse}, one line per row
+     * with trailing floor trimmed.
+     */
+    public List<String> toXsb() {
+        boolean[] boxes = new boolean[rows * cols];
+        for (int[] box : initBoxPositions.values()) {
+            boxes[cell(box[0], box[1])] = true;
+        }
+        int player = cell(sokoban[0], sokoban[1]);
+
+        List<String> lines = new ArrayList<>(rows);
+        StringBuilder line = new StringBuilder(cols);
+        for (int i = 0; i < rows; i++) {
+            line.setLength(0);
+            for (int j = 0; j < cols; j++) {
+                int cell = cell(i, j);
+                if (walls[cell]) {
+                    line.append('#');
+                } else if (boxes[cell]) {
+                    line.append(goals[cell] ? '*' : '$');
+                } else if (cell == player) {
+                    line.append(goals[cell] ? '+' : '@');
+                } else {
+                    line.append(goals[cell] ? '.' : ' ');
+                }
+            }
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ') end--;
+            lines.add(line.substring(0, end));
+        }
+        return lines;
+    }
+
+    private Level(Level base, Map<Integer, int[]> initBoxPositions, int[] sokoban,
+                  PatternDatabase patternDatabase, DeadlockPatterns deadlockPatterns) {
+        this.rows = base.rows;
+        this.cols = base.cols;
+        this.walls = base.walls;
+        this.goals = base.goals;
+        this.neighbours = base.neighbours;
+        this.tunnels = base.tunnels;
+        this.deadSquares = base.deadSquares;
+        this.goalRooms = base.goalRooms;
+        this.roomEntrances = base.roomEntrances;
+        this.roomGoals = base.roomGoals;
+        this.goalRanks = base.goalRanks;
+        this.goalOrder = base.goalOrder;
+        this.goalPositions = base.goalPositions;
+        this.initBoxPositions = initBoxPositions;
+        this.sokoban = sokoban;
+        this.patternDatabase = patternDatabase;
+        this.deadlockPatterns = deadlockPatterns;
+    }
+
+    private Level with(List<int[]> extraBoxes, int[] start) {
+        HashMap<Integer, int[]> boxPositions = new HashMap<>(initBoxPositions);
+        for (int[] box : extraBoxes) {
+            boxPositions.put(cantorPair(box[0], box[1]), box.clone());
+        }
+        return new Level(this, Collections.unmodifiableMap(boxPositions), start != null ? start : sokoban,
+                patternDatabase, deadlockPatterns);
+    }
+
+    /**
+     * Returns a copy of this level whose heuristic and deadlock checks consult {@code database}.
+     */
+    public Level withPatternDatabase(PatternDatabase database) {
+        return new Level(this, initBoxPositions, sokoban, database, deadlockPatterns);
+    }
+
+    /**
+     * The pattern database attached with {@link #withPatternDatabase}, or null.
+     */
+    public PatternDatabase patternDatabase() {
+        return patternDatabase;
+    }
+
+    /**
+     * Returns a copy of this level whose deadlock check also prunes every state containing one of
+     * {@code patterns}.
+     */
+    public Level withDeadlockPatterns(DeadlockPatterns patterns) {
+        return new Level(this, initBoxPositions, sokoban, patternDatabase, patterns);
+    }
+
+    /**
+     * The known dead box configurations attached with {@link #withDeadlockPatterns}, or null.
+     */
+    public DeadlockPatterns deadlockPatterns() {
+        return deadlockPatterns;
+    }
+
+    /**
+     * The layout's masks as bitboards, shared by every search on this level.
+     */
+    public Bitboard bitboard() {
+        Bitboard board = bitboard;
+        if (board == null) {
+            board = new Bitboard(this);
+            bitboard = board;
+        }
+        return board;
+    }
+
+    /**
+     * Hash of the whole starting position: the layout, every box and the player. Two levels with
+     * the same hash have the same solutions.
+     */
+    public long levelHash() {
+        int[] boxes = new int[initBoxPositions.size()];
+        int n = 0;
+        for (int[] box : initBoxPositions.values()) {
+            boxes[n++] = cell(box[0], box[1]);
+        }
+        Arrays.sort(boxes);
+
+        long hash = layoutHash();
+        for (int box : boxes) {
+            hash = (hash ^ box) * 0x100000001b3L;
+        }
+        return (hash ^ cell(sokoban[0], sokoban[1])) * 0x100000001b3L;
+    }
+
+    /**
+     * Hash of the walls and goals only. Everything derived from the layout alone, such as a
+     * pattern database, is keyed by it and can be shared by levels that differ in their start.
+     */
+    public long layoutHash() {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ rows) * 0x100000001b3L;
+        hash = (hash ^ cols) * 0x100000001b3L;
+        for (int cell = 0; cell < rows * cols; cell++) {
+            hash = (hash ^ (walls[cell] ? 1 : goals[cell] ? 2 : 0)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int cell(int i, int j) {
+        return i * cols + j;
+    }
+
+    public boolean isWall(int i, int j) {
+        return i < 0 || j < 0 || i >= rows || j >= cols || walls[i * cols + j];
+    }
+
+    public boolean isWall(int cell) {
+        return walls[cell];
+    }
+
+    public boolean isGoal(int i, int j) {
+        return i >= 0 && j >= 0 && i < rows && j < cols && goals[i * cols + j];
+    }
+
+    public boolean isGoal(int cell) {
+        return goals[cell];
+    }
+
+    /**
+     * True for a floor cell from which a box can never be pushed onto a goal.
+     */
+    public boolean isDeadSquare(int cell) {
+        return !walls[cell] && deadSquares[cell];
+    }
+
+    /**
+     * Returns the cell reached by stepping from {@code cell} in direction {@code d} (index into
+     * {@link #DIRECTIONS}), or -1 if that step would enter a wall.
+     */
+    public int neighbour(int cell, int d) {
+        return neighbours[cell * 4 + d];
+    }
+
+    /**
+     * True if a box pushed into {@code cell} in direction {@code d} has walls on both sides across
+     * the push, i.e. the cell is part of a tunnel running along {@code d}.
+     */
+    public boolean isTunnel(int cell, int d) {
+        return (tunnels[cell] & (d < 2 ? 1 : 2)) != 0;
+    }
+
+    /**
+     * Returns the goal room {@code cell} belongs to, or -1 if it is not part of one.
+     */
+    public int goalRoom(int cell) {
+        return goalRooms[cell];
+    }
+
+    public int goalRoomCount() {
+        return roomEntrances.length;
+    }
+
+    /**
+     * The only non-goal cell adjacent to the room; every box enters the room through it.
+     */
+    public int roomEntrance(int room) {
+        return roomEntrances[room];
+    }
+
+    /**
+     * Returns the goal room whose entrance is {@code cell}, or -1 if it is not an entrance.
+     */
+    public int roomAtEntrance(int cell) {
+        for (int room = 0; room < roomEntrances.length; room++) {
+            if (roomEntrances[room] == cell) return room;
+        }
+        return -1;
+    }
+
+    /**
+     * The goals of the room, deepest (furthest from the entrance) first.
+     */
+    public int[] roomGoals(int room) {
+        return roomGoals[room].clone();
+    }
+
+    /**
+     * Rank of the goal at {@code cell} in the packing order: it should only be filled once every
+     * goal of a lower rank holds a box. Returns -1 for cells that are not goals.
+     */
+    public int goalRank(int cell) {
+        return goalRanks[cell];
+    }
+
+    /**
+     * The {@code k}-th goal cell in packing order, lowest rank first.
+     */
+    public int goalInOrder(int k) {
+        return goalOrder[k];
+    }
+
+    /**
+     * True if the packing order actually constrains anything, i.e. the goals span several ranks.
+     */
+    public boolean hasPackingOrder() {
+        return goalOrder.length > 0 && goalRanks[goalOrder[goalOrder.length - 1]] > 0;
+    }
+
+    public int goalCount() {
+        return goalOrder.length;
+    }
+
+    public int boxCount() {
+        return initBoxPositions.size();
+    }
+
+    /**
+     * The goals by {@link #cantorPair} key, as a copy the caller owns, arrays included. Loops that
+     * run per search node should go through {@link #goalCount} and {@link #goalInOrder} instead.
+     */
+    public Map<Integer, int[]> goalPositions() {
+        return deepCopy(goalPositions);
+    }
+
+    /**
+     * The boxes at the start by {@link #cantorPair} key, as a copy the caller owns, arrays
+     * included, so moving a box never moves it for anyone else.
+     */
+    public HashMap<Integer, int[]> initBoxPositions() {
+        return deepCopy(initBoxPositions);
+    }
+
+    private static HashMap<Integer, int[]> deepCopy(Map<Integer, int[]> positions) {
+        HashMap<Integer, int[]> copy = new HashMap<>();
+        for (Map.Entry<Integer, int[]> entry : positions.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().clone());
+        }
+        return copy;
+    }
+
+    public int[] sokoban() {
+        return sokoban.clone();
+    }
+
+    public static int cantorPair(int x, int y) {
+        return (x + y) * (x + y + 1) / 2 + y;
+    }
+
+    public static int[] inverseCantorPair(int z) {
+        int w = (int) Math.floor((Math.sqrt(8 * z + 1) - 1) / 2);
+        int t = (w * (w + 1)) / 2;
+        int y = z - t;
+        int x = w - y;
+        return new int[]{x, y};
+    }
+}
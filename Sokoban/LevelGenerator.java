@@ -0,0 +1,326 @@
+package Sokoban;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Seeded generator of solvable levels. Generation starts from a solved position: walls are
+ * scattered over a rectangle, every box is put on a goal, and the player then pulls boxes at
+ * random. A pull is a push played backwards, so pushing the boxes back in the reverse order
+ * solves the level. The generator records the pulls, writes that solution out and replays it
+ * with the {@link SolutionVerifier} before it returns a level, so every generated level comes
+ * with a checked solution. The same seed always gives the same level.
+ */
+public final class LevelGenerator {
+    private static final int MAX_ATTEMPTS = 100;
+
+    private final int rows;
+    private final int cols;
+    private final int boxes;
+    private final double wallDensity;
+    private final int pulls;
+
+    public LevelGenerator(int rows, int cols, int boxes) {
+        this(rows, cols, boxes, 0.2, boxes * (rows + cols));
+    }
+
+    /**
+     * @param wallDensity chance that a cell inside the border starts as a wall
+     * @param pulls       random pulls played back from the solved position
+     */
+    public LevelGenerator(int rows, int cols, int boxes, double wallDensity, int pulls) {
+        if (rows < 3 || cols < 3 || boxes < 1) {
+            throw new IllegalArgumentException("Need at least 3x3 cells and one box, got " + rows + "x" + cols + " with " + boxes);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.boxes = boxes;
+        this.wallDensity = wallDensity;
+        this.pulls = pulls;
+    }
+
+    /**
+     * Usage: {@code java Sokoban.LevelGenerator <out> <count> <rows> <cols> <boxes> [seed]}.
+     * Writes {@code count} levels in the standard format, generated in parallel.
+     */
+    public static void main(String[] args) throws IOException {
+        Path out = Path.of(args[0]);
+        int count = Integer.parseInt(args[1]);
+        LevelGenerator generator = new LevelGenerator(Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+        long start = System.nanoTime();
+        List<Level> levels = generator.generate(seed, count);
+        write(levels, "gen", out);
+        System.out.printf("%d levels written to %s in %.0f ms%n", count, out, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Generates {@code count} levels in parallel. Level k is the one {@link #generate(long)}
+     * gives for {@code seed + k}, so the corpus does not depend on the number of threads.
+     */
+    public List<Level> generate(long seed, int count) {
+        return IntStream.range(0, count).parallel()
+                .mapToObj(k -> generate(seed + k))
+                .collect(Collectors.toList());
+    }
+
+    public Level generate(long seed) {
+        return generateSolved(seed).level;
+    }
+
+    /**
+     * A generated level with the solution it was built from: the recorded pulls, played back as
+     * pushes with the walks between them. It is not meant to be short.
+     */
+    public static final class Generated {
+        public final Level level;
+        public final String solution;
+
+        Generated(Level level, String solution) {
+            this.level = level;
+            this.solution = solution;
+        }
+    }
+
+    /**
+     * The level {@link #generate(long)} gives for {@code seed}, with its solution.
+     *
+     * @throws IllegalStateException if the solution does not replay, which would be a bug here
+     */
+    public Generated generateSolved(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Generated generated = attempt(random);
+            if (generated == null) continue;
+            SolutionVerifier.Result result = new SolutionVerifier(generated.level).verify(generated.solution);
+            if (!result.isValid()) {
+                throw new IllegalStateException("Recorded solution to the level from seed " + seed + " fails: " + result);
+            }
+            return generated;
+        }
+        throw new IllegalStateException("No " + rows + "x" + cols + " level with " + boxes
+                + " boxes found in " + MAX_ATTEMPTS + " attempts from seed " + seed);
+    }
+
+    /**
+     * Writes levels in the standard format, each under a "; prefix-k" title and followed by a
+     * blank line, as {@link Level#load} reads them.
+     */
+    public static void write(List<Level> levels, String prefix, Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int k = 0; k < levels.size(); k++) {
+            lines.add("; " + prefix + "-" + (k + 1));
+            lines.addAll(levels.get(k).toXsb());
+            lines.add("");
+        }
+        Files.write(path, lines);
+    }
+
+    // One try at a level: null if the floor came out too small or no box left its goal.
+    private Generated attempt(SplittableRandom random) {
+        int cells = rows * cols;
+        boolean[] wall = new boolean[cells];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                wall[i * cols + j] = i == 0 || j == 0 || i == rows - 1 || j == cols - 1 || random.nextDouble() < wallDensity;
+            }
+        }
+
+        int[] region = largestRegion(wall);
+        if (region.length < 2 * boxes + 2) return null;
+        boolean[] inRegion = new boolean[cells];
+        for (int cell : region) {
+            inRegion[cell] = true;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            if (!inRegion[cell]) wall[cell] = true;
+        }
+
+        // Goals, with their boxes on them, and the player on a random free cell.
+        for (int k = 0; k < region.length - 1; k++) {
+            int swap = k + random.nextInt(region.length - k);
+            int cell = region[k];
+            region[k] = region[swap];
+            region[swap] = cell;
+        }
+        boolean[] goal = new boolean[cells];
+        boolean[] box = new boolean[cells];
+        for (int k = 0; k < boxes; k++) {
+            goal[region[k]] = true;
+            box[region[k]] = true;
+        }
+        int player = region[boxes];
+
+        int[] queue = new int[cells];
+        boolean[] reached = new boolean[cells];
+        int[] pullFrom = new int[cells * 4];
+        int[] played = new int[pulls];
+        int count = 0;
+        for (int p = 0; p < pulls; p++) {
+            // Every pull the player can walk to: stand on a, box on a + d, step back to a - d.
+            int reachable = reach(player, wall, box, queue, reached);
+            int candidates = 0;
+            for (int k = 0; k < reachable; k++) {
+                int cell = queue[k];
+                for (int d = 0; d < 4; d++) {
+                    int boxCell = step(cell, d, wall);
+                    int back = step(cell, d ^ 1, wall);
+                    if (boxCell != -1 && back != -1 && box[boxCell] && !box[back]) {
+                        pullFrom[candidates++] = cell * 4 + d;
+                    }
+                }
+            }
+            if (candidates == 0) break;
+
+            int pull = pullFrom[random.nextInt(candidates)];
+            int cell = pull >> 2;
+            int d = pull & 3;
+            box[step(cell, d, wall)] = false;
+            box[cell] = true;
+            player = step(cell, d ^ 1, wall);
+            played[count++] = pull;
+        }
+
+        int placed = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (box[cell] && goal[cell]) placed++;
+        }
+        if (placed == boxes) return null;
+
+        // Walking is reversible, so the player may start anywhere it can walk to.
+        int reachable = reach(player, wall, box, queue, reached);
+        player = queue[random.nextInt(reachable)];
+
+        List<String> lines = new ArrayList<>(rows);
+        StringBuilder line = new StringBuilder(cols);
+        for (int i = 0; i < rows; i++) {
+            line.setLength(0);
+            for (int j = 0; j < cols; j++) {
+                int cell = i * cols + j;
+                if (wall[cell]) {
+                    line.append('#');
+                } else if (box[cell]) {
+                    line.append(goal[cell] ? '*' : '$');
+                } else if (cell == player) {
+                    line.append(goal[cell] ? '+' : '@');
+                } else {
+                    line.append(goal[cell] ? '.' : ' ');
+                }
+            }
+            lines.add(line.toString());
+        }
+        return new Generated(Level.parse(lines), solution(player, wall, box, played, count));
+    }
+
+    /**
+     * Undoes the pulls last to first: the player walks to the cell it stepped back to and pushes
+     * the box back to where it was pulled from. Works on its own copy of the boxes.
+     */
+    private String solution(int player, boolean[] wall, boolean[] boxes, int[] played, int count) {
+        boolean[] box = boxes.clone();
+        int[] cameFrom = new int[rows * cols];
+        int[] queue = new int[rows * cols];
+        StringBuilder moves = new StringBuilder();
+        for (int p = count - 1; p >= 0; p--) {
+            int cell = played[p] >> 2;
+            int d = played[p] & 3;
+            walk(player, step(cell, d ^ 1, wall), wall, box, cameFrom, queue, moves);
+            moves.append(Level.MOVES[d]);
+            box[cell] = false;
+            box[step(cell, d, wall)] = true;
+            player = cell;
+        }
+        return moves.toString();
+    }
+
+    // Appends the moves of a shortest walk from one cell to another that avoids the boxes.
+    private void walk(int from, int to, boolean[] wall, boolean[] box, int[] cameFrom, int[] queue, StringBuilder moves) {
+        Arrays.fill(cameFrom, -1);
+        int head = 0, tail = 0;
+        cameFrom[from] = 4;
+        queue[tail++] = from;
+        while (head < tail && cameFrom[to] == -1) {
+            int cell = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int next = step(cell, d, wall);
+                if (next != -1 && !box[next] && cameFrom[next] == -1) {
+                    cameFrom[next] = d;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        if (cameFrom[to] == -1) throw new IllegalStateException("No walk from cell " + from + " to " + to);
+        int end = moves.length();
+        for (int cell = to; cell != from; cell = step(cell, cameFrom[cell] ^ 1, wall)) {
+            moves.insert(end, Level.MOVES[cameFrom[cell]]);
+        }
+    }
+
+    // The cells of the largest connected area of floor.
+    private int[] largestRegion(boolean[] wall) {
+        int cells = rows * cols;
+        int[] component = new int[cells];
+        int[] queue = new int[cells];
+        int best = 0, bestSize = 0;
+        int components = 0;
+        for (int start = 0; start < cells; start++) {
+            if (wall[start] || component[start] != 0) continue;
+            components++;
+            int head = 0, tail = 0;
+            component[start] = components;
+            queue[tail++] = start;
+            while (head < tail) {
+                int cell = queue[head++];
+                for (int d = 0; d < 4; d++) {
+                    int next = step(cell, d, wall);
+                    if (next != -1 && component[next] == 0) {
+                        component[next] = components;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            if (tail > bestSize) {
+                best = components;
+                bestSize = tail;
+            }
+        }
+
+        int[] region = new int[bestSize];
+        int n = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (component[cell] == best && best != 0) region[n++] = cell;
+        }
+        return region;
+    }
+
+    // Fills queue with the cells the player can walk to and returns how many there are.
+    private int reach(int player, boolean[] wall, boolean[] box, int[] queue, boolean[] reached) {
+        Arrays.fill(reached, false);
+        int head = 0, tail = 0;
+        reached[player] = true;
+        queue[tail++] = player;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int next = step(cell, d, wall);
+                if (next != -1 && !box[next] && !reached[next]) {
+                    reached[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return tail;
+    }
+
+    // The cell one step in direction d (index into Level.DIRECTIONS), or -1 for a wall. The
+    // border is always wall, so a step from the floor never leaves the board.
+    private int step(int cell, int d, boolean[] wall) {
+        int next = cell + Level.DIRECTIONS[d][0] * cols + Level.DIRECTIONS[d][1];
+        return wall[next] ? -1 : next;
+    }
+}
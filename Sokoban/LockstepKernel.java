@@ -0,0 +1,93 @@
+package Sokoban;
+
+/**
+ * One step of {@link Population#evaluate_fitness_lockstep}: every active lane plays its move for
+ * the current DNA index and updates its fitness. The lanes are the flat arrays of the lockstep
+ * evaluation, boxes box-major with a stride of {@link Population#LANES}. {@link #load} picks this
+ * lane-by-lane loop unless {@code sokoban.ga.vector=true} asks for the Vector API kernel and
+ * {@link VectorSupport} can load it. The vector kernel scores the same but measured no faster on
+ * any level of the corpus, from one box to seven, at 16 int lanes; its table lookups and double
+ * fitness updates still go lane by lane, which leaves little for the vector compares to win.
+ */
+class LockstepKernel {
+    final int[] neighbours; // cell * 4 + d, as Level.neighbour
+    final int[] rowOf;
+    final int[] colOf;
+    final int[] goalDistance;
+
+    LockstepKernel(int[] neighbours, int[] rowOf, int[] colOf, int[] goalDistance) {
+        this.neighbours = neighbours;
+        this.rowOf = rowOf;
+        this.colOf = colOf;
+        this.goalDistance = goalDistance;
+    }
+
+    static LockstepKernel load(int[] neighbours, int[] rowOf, int[] colOf, int[] goalDistance) {
+        LockstepKernel vector = VectorSupport.load("sokoban.ga.vector", false, "Sokoban.VectorLockstepKernel",
+                LockstepKernel.class, new Class<?>[]{int[].class, int[].class, int[].class, int[].class},
+                neighbours, rowOf, colOf, goalDistance);
+        return vector != null ? vector : new LockstepKernel(neighbours, rowOf, colOf, goalDistance);
+    }
+
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * Plays DNA index {@code i} on lanes {@code 0..lanes-1}. {@code direction} holds each lane's
+     * move as an index into {@link Level#DIRECTIONS}, or -1 for anything else, which leaves the
+     * player where it is. A lane whose move is invalid gets {@code invalidAt = i}, a fitness of 0
+     * and is made inactive.
+     */
+    void step(int i, int lanes, int boxCount, int[] player, int[] boxes, double[] fitness,
+              boolean[] active, int[] invalidAt, int[] direction) {
+        int stride = Population.LANES;
+        for (int lane = 0; lane < lanes; lane++) {
+            if (!active[lane]) continue;
+            int d = direction[lane];
+            int next = d == -1 ? player[lane] : neighbours[player[lane] * 4 + d];
+            int pushed = -1;
+            int beyond = -1;
+            boolean valid = next != -1;
+            if (valid && d != -1) {
+                for (int b = 0; b < boxCount; b++) {
+                    if (boxes[b * stride + lane] == next) pushed = b;
+                }
+                if (pushed != -1) {
+                    beyond = neighbours[next * 4 + d];
+                    valid = beyond != -1;
+                    for (int b = 0; b < boxCount && valid; b++) {
+                        if (boxes[b * stride + lane] == beyond) valid = false;
+                    }
+                }
+            }
+            if (!valid) {
+                invalidAt[lane] = i;
+                fitness[lane] = 0;
+                active[lane] = false;
+                continue;
+            }
+
+            player[lane] = next;
+            if (pushed != -1) boxes[pushed * stride + lane] = beyond;
+
+            int minBoxDistance = Integer.MAX_VALUE;
+            int totalDistance = 0;
+            for (int b = 0; b < boxCount; b++) {
+                int box = boxes[b * stride + lane];
+                int distance = Math.abs(rowOf[next] - rowOf[box]) + Math.abs(colOf[next] - colOf[box]);
+                minBoxDistance = Math.min(minBoxDistance, distance);
+                totalDistance += goalDistance[box];
+            }
+            score(fitness, lane, boxCount, minBoxDistance, totalDistance);
+        }
+    }
+
+    // The scalar path's push rewards test for the box where the player now stands, after it has
+    // been moved on, so they never apply and are left out here.
+    static void score(double[] fitness, int lane, int boxCount, int minBoxDistance, int totalDistance) {
+        fitness[lane] -= 0.5;
+        fitness[lane] += boxCount / (minBoxDistance + 0.0000001);
+        fitness[lane] -= totalDistance * 0.1;
+    }
+}
@@ -0,0 +1,267 @@
+package Sokoban;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Two-box pattern database. For every pair of floor cells it stores the fewest pushes needed to
+ * bring a box on each of them onto two different goals, with every other box taken off the board.
+ * The player is relaxed away: a push only needs the cell behind the box to be free floor. That
+ * keeps the value a lower bound, while still seeing the interactions between two boxes that a
+ * per-box distance misses.
+ * <p>
+ * Tables are built once per layout and written to {@code <dir>/<layout hash>.pdb}:
+ * <pre>
+ *   int   magic 'SKPD'
+ *   int   format version
+ *   long  {@link Level#layoutHash()}
+ *   int   floor cell count F
+ *   int[F] board cell of each floor index
+ *   byte[F * F] push count for (a, b), 254 for 254 or more, 255 if the pair can never be solved
+ * </pre>
+ * At solve time the file is memory-mapped and each query is a single byte read.
+ * <p>
+ * Usage: {@code java Sokoban.PatternDatabase <levels-file> <dir> [threads]}
+ */
+public final class PatternDatabase {
+    public static final int UNSOLVABLE = 255;
+    // The largest push count a byte holds below UNSOLVABLE; it stands for that many or more.
+    public static final int SATURATED = UNSOLVABLE - 1;
+
+    private static final int MAGIC = 0x534B5044;
+    // Version 1 stopped the search at 254 pushes and left longer pairs marked unsolvable.
+    private static final int VERSION = 2;
+    // The file is mapped as one buffer and the table built as one array, so both are indexed by
+    // int. A few bytes are left for the header some VMs reserve in an array.
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE - 8;
+
+    private final int floorCount;
+    private final int[] floorIndex;
+    private final int tableOffset;
+    private final ByteBuffer table;
+
+    private PatternDatabase(int floorCount, int[] floorIndex, int tableOffset, ByteBuffer table) {
+        this.floorCount = floorCount;
+        this.floorIndex = floorIndex;
+        this.tableOffset = tableOffset;
+        this.table = table;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Level> levels = Level.load(Path.of(args[0]));
+        Path dir = Path.of(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        for (Level level : levels) {
+            long start = System.nanoTime();
+            Path file = build(level, dir, threads);
+            System.out.printf("%s built in %.0f ms%n", file, (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    /**
+     * Returns {@code level} with its pattern database attached when the {@code sokoban.pdb.dir}
+     * system property names a directory. The table is built there first if it is missing.
+     */
+    public static Level attach(Level level) throws IOException {
+        String dir = System.getProperty("sokoban.pdb.dir");
+        if (dir == null) return level;
+        return level.withPatternDatabase(open(level, Path.of(dir), Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Maps the table for this level's layout from {@code dir}, building it first if it is missing
+     * or was written by another version.
+     */
+    public static PatternDatabase open(Level level, Path dir, int threads) throws IOException {
+        Path file = file(level, dir);
+        if (!Files.exists(file) || !currentVersion(file)) {
+            build(level, dir, threads);
+        }
+        return map(level, file);
+    }
+
+    private static boolean currentVersion(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining()) {
+                if (channel.read(header) == -1) break;
+            }
+            header.flip();
+            return header.remaining() == 8 && header.getInt() == MAGIC && header.getInt() == VERSION;
+        }
+    }
+
+    public static Path file(Level level, Path dir) {
+        return dir.resolve(Long.toHexString(level.layoutHash()) + ".pdb");
+    }
+
+    public static PatternDatabase map(Level level, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_FILE_SIZE) {
+                throw new IOException(file + " holds a table too large to index");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not a pattern database");
+            }
+            if (buffer.getLong() != level.layoutHash()) {
+                throw new IOException(file + " was built for a different level");
+            }
+
+            int floorCount = buffer.getInt();
+            int[] floorIndex = new int[level.rows() * level.cols()];
+            Arrays.fill(floorIndex, -1);
+            for (int f = 0; f < floorCount; f++) {
+                floorIndex[buffer.getInt()] = f;
+            }
+            if ((long) buffer.position() + (long) floorCount * floorCount != channel.size()) {
+                throw new IOException(file + " is truncated");
+            }
+            return new PatternDatabase(floorCount, floorIndex, buffer.position(), buffer);
+        }
+    }
+
+    /**
+     * Fewest pushes to solve boxes on cells {@code a} and {@code b} alone, at most
+     * {@link #SATURATED}, or {@link #UNSOLVABLE}.
+     * The index fits in an int because {@link #map} only accepts tables that do.
+     */
+    public int distance(int a, int b) {
+        int fa = floorIndex[a];
+        int fb = floorIndex[b];
+        if (fa < 0 || fb < 0) return UNSOLVABLE;
+        return table.get(tableOffset + fa * floorCount + fb) & 0xFF;
+    }
+
+    /**
+     * Builds the table for {@code level} with {@code threads} workers and writes it to {@code dir}.
+     *
+     * @throws IllegalArgumentException if the level has too many floor cells for the table to be
+     *                                  indexed by int
+     */
+    public static Path build(Level level, Path dir, int threads) throws IOException {
+        int cells = level.rows() * level.cols();
+        int[] floorCells = new int[cells];
+        int[] floorIndex = new int[cells];
+        int floorCount = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            floorIndex[cell] = -1;
+            if (!level.isWall(cell)) {
+                floorIndex[cell] = floorCount;
+                floorCells[floorCount++] = cell;
+            }
+        }
+        long fileSize = 20 + 4L * floorCount + (long) floorCount * floorCount;
+        if (fileSize > MAX_FILE_SIZE) {
+            throw new IllegalArgumentException("A pattern database for " + floorCount
+                    + " floor cells takes " + fileSize + " bytes, more than " + MAX_FILE_SIZE);
+        }
+
+        byte[] table = buildTable(level, Arrays.copyOf(floorCells, floorCount), floorIndex, threads);
+
+        ByteBuffer header = ByteBuffer.allocate(20 + 4 * floorCount);
+        header.putInt(MAGIC).putInt(VERSION).putLong(level.layoutHash()).putInt(floorCount);
+        for (int f = 0; f < floorCount; f++) {
+            header.putInt(floorCells[f]);
+        }
+        header.flip();
+
+        // Written under a temporary name and moved into place, so a concurrent solve never maps
+        // a half-written file.
+        Files.createDirectories(dir);
+        Path file = file(level, dir);
+        Path temp = Files.createTempFile(dir, "pdb", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) channel.write(header);
+            ByteBuffer body = ByteBuffer.wrap(table);
+            while (body.hasRemaining()) channel.write(body);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    // Breadth-first search backwards from every pair of distinct goals, one layer at a time, until
+    // a layer adds nothing. Each layer is split across the workers by table slice; a worker pulls
+    // either box of every pair in its slice that lies on the current layer. Two workers can only
+    // ever race to write the same value into an empty entry, and the join between layers
+    // publishes all writes. From SATURATED on, the layers share that value: every saturated pair
+    // is pulled again for each further layer, which still only fills empty entries, so the
+    // search runs on to every reachable pair and only unreachable ones stay UNSOLVABLE.
+    private static byte[] buildTable(Level level, int[] floorCells, int[] floorIndex, int threads) throws IOException {
+        int floorCount = floorCells.length;
+        byte[] table = new byte[floorCount * floorCount];
+        Arrays.fill(table, (byte) UNSOLVABLE);
+        for (int a = 0; a < floorCount; a++) {
+            for (int b = 0; b < floorCount; b++) {
+                if (a != b && level.isGoal(floorCells[a]) && level.isGoal(floorCells[b])) {
+                    table[a * floorCount + b] = 0;
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int depth = 0; ; depth++) {
+                int layer = depth;
+                int slice = (floorCount + threads - 1) / threads;
+                List<Callable<Boolean>> tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int from = t * slice;
+                    int to = Math.min(floorCount, from + slice);
+                    tasks.add(() -> expandLayer(level, floorCells, floorIndex, table, layer, from, to));
+                }
+
+                boolean grew = false;
+                for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                    grew |= result.get();
+                }
+                if (!grew) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building pattern database", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return table;
+    }
+
+    private static boolean expandLayer(Level level, int[] floorCells, int[] floorIndex, byte[] table,
+                                       int depth, int from, int to) {
+        int floorCount = floorCells.length;
+        int layer = Math.min(depth, SATURATED);
+        byte next = (byte) Math.min(depth + 1, SATURATED);
+        boolean grew = false;
+        for (int a = from; a < to; a++) {
+            for (int b = 0; b < floorCount; b++) {
+                if ((table[a * floorCount + b] & 0xFF) != layer) continue;
+                for (int d = 0; d < 4; d++) {
+                    // Undo a push in direction d of the box on a: it came from one cell back,
+                    // with the player one cell further back still.
+                    int back = d ^ 1;
+                    int previous = level.neighbour(floorCells[a], back);
+                    int player = previous == -1 ? -1 : level.neighbour(previous, back);
+                    if (player != -1 && previous != floorCells[b] && player != floorCells[b]) {
+                        int index = floorIndex[previous] * floorCount + b;
+                        if ((table[index] & 0xFF) == UNSOLVABLE) {
+                            table[index] = next;
+                            table[b * floorCount + floorIndex[previous]] = next;
+                            grew = true;
+                        }
+                    }
+                }
+            }
+        }
+        return grew;
+    }
+}
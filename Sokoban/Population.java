@@ -0,0 +1,486 @@
+package Sokoban;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+class Population {
+    final Level level;
+    int population_size;
+    double initial_mutation_rate;
+    Element[] population;
+    Element bestElement;
+    Random random;
+    int stagnationCounter;
+    double bestFitness;
+    final SolverMetrics metrics = new SolverMetrics("genetic");
+    private final LongAdder generations = metrics.counter("generations");
+    private final LongAdder evaluations = metrics.counter("evaluations");
+    private final SolverMetrics.Gauge bestFitnessGauge = metrics.gauge("bestFitness");
+
+    // Per-cell tables for the lockstep simulation.
+    private final int startCell;
+    private final int[] initialBoxCells;
+    private final int[] rowOf;
+    private final int[] colOf;
+    private final int[] goalDistance;
+    final LockstepKernel kernel;
+
+    public Population(Level level, int population_size, double initial_mutation_rate, int dnaLength) {
+        this.level = level;
+        this.population_size = population_size;
+        this.initial_mutation_rate = initial_mutation_rate;
+        this.bestElement = null;
+        this.random = new Random();
+        this.stagnationCounter = 0;
+        this.bestFitness = Double.NEGATIVE_INFINITY;
+
+        int cells = level.rows() * level.cols();
+        this.startCell = level.cell(level.sokoban()[0], level.sokoban()[1]);
+        this.initialBoxCells = new int[level.boxCount()];
+        int n = 0;
+        for (int[] box : level.initBoxPositions().values()) {
+            initialBoxCells[n++] = level.cell(box[0], box[1]);
+        }
+        this.rowOf = new int[cells];
+        this.colOf = new int[cells];
+        this.goalDistance = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            rowOf[cell] = cell / level.cols();
+            colOf[cell] = cell % level.cols();
+            goalDistance[cell] = Integer.MAX_VALUE;
+            for (int k = 0; k < level.goalCount(); k++) {
+                int goal = level.goalInOrder(k);
+                goalDistance[cell] = Math.min(goalDistance[cell],
+                        Math.abs(rowOf[cell] - goal / level.cols()) + Math.abs(colOf[cell] - goal % level.cols()));
+            }
+        }
+
+        int[] neighbours = new int[cells * 4];
+        for (int cell = 0; cell < cells; cell++) {
+            for (int d = 0; d < 4; d++) {
+                neighbours[cell * 4 + d] = level.neighbour(cell, d);
+            }
+        }
+        this.kernel = LockstepKernel.load(neighbours, rowOf, colOf, goalDistance);
+
+        population = new Element[population_size];
+        for (int i = 0; i < population_size; i++) {
+            population[i] = Element.getRandom(dnaLength);
+        }
+    }
+
+    public void evaluate_fitness() {
+        if (Bitboard.SELECTED)
+            evaluate_fitness_bitboard();
+        else if (LOCKSTEP)
+            evaluate_fitness_lockstep();
+        else
+            evaluate_fitness_scalar();
+    }
+
+    // One genome at a time on the HashMap board.
+    void evaluate_fitness_scalar() {
+        generations.increment();
+        for (Element element : population) {
+            evaluations.increment();
+            double fitness = 0.0;
+            int[] sokobanPosition = level.sokoban();
+            HashMap<Integer, int[]> boxPositions = level.initBoxPositions();
+
+            for (int i = 0; i < element.dna.length; i++) {
+                char move = element.dna[i];
+                int[] newSokobanPosition = moveSokoban(sokobanPosition, move);
+
+                if (isValidMove(newSokobanPosition, boxPositions, move)) {
+                    sokobanPosition = newSokobanPosition;
+                    updateBoxPositions(sokobanPosition, boxPositions, move);
+
+                    // Penalize each move slightly to encourage shorter solutions
+                    fitness -= 0.5;
+
+                    // Calculate minimum distance from Sokoban to the closest box
+                    int minBoxDistance = Integer.MAX_VALUE;
+                    for (int[] boxPos : boxPositions.values()) {
+                        int boxDistance = Math.abs(sokobanPosition[0] - boxPos[0]) + Math.abs(sokobanPosition[1] - boxPos[1]);
+                        minBoxDistance = Math.min(minBoxDistance, boxDistance);
+                    }
+
+                    // Reward being closer to boxes
+                    fitness += boxPositions.size() / (minBoxDistance + 0.0000001); // +1 to avoid division by zero
+
+                    // Check if a box was pushed
+                    int boxPair = Level.cantorPair(newSokobanPosition[0], newSokobanPosition[1]);
+                    if (boxPositions.containsKey(boxPair)) {
+                        int[] newBoxPos = moveSokoban(newSokobanPosition, move);
+                        int newBoxPair = Level.cantorPair(newBoxPos[0], newBoxPos[1]);
+
+                        // Reward pushing boxes towards goals
+                        if (level.isGoal(newBoxPos[0], newBoxPos[1])) {
+                            fitness += 100;
+                        } else if (isCloserToGoal(newBoxPos, boxPositions.get(boxPair))) {
+                            fitness += 20;
+                        } else {
+                            // Penalize pushing boxes away from goals
+                            fitness -= 10;
+                        }
+
+                        // Check for deadlocks
+                        if (isDeadlock(boxPositions)) {
+                            fitness -= 1000;
+                            break;
+                        }
+                    }
+                } else {
+                    element.dna[i] = ' ';
+                    fitness = 0; // Penalty for invalid moves
+                    break; // Stop evaluating further moves
+                }
+
+                // Penalize based on the Manhattan distance of boxes to goals
+                fitness -= calculateTotalManhattanDistance(boxPositions) * 0.1;
+            }
+
+            int placedBoxes = countPlacedBoxes(boxPositions);
+            fitness += placedBoxes * 1000; // Reward for boxes placed on goals
+
+            // Terminate if a solution is found
+            if (placedBoxes == level.goalCount()) {
+                element.fitness = Double.MAX_VALUE;
+                this.bestElement = element;
+                bestFitnessGauge.set(element.fitness);
+                return;
+            } else {
+                element.fitness = fitness;
+            }
+        }
+        bestFitnessGauge.set(getHighestElement().fitness);
+    }
+
+
+    // Genomes simulated side by side by evaluate_fitness_lockstep.
+    static final int LANES = 64;
+    static final boolean LOCKSTEP = !Boolean.getBoolean("sokoban.ga.scalar");
+
+    /**
+     * Scores the population exactly as {@link #evaluate_fitness_scalar} does, but simulates
+     * {@link #LANES} genomes at a time in lockstep. The lanes live in flat arrays (player cell,
+     * then box cells box-major) and every DNA index advances all lanes together in a branch-light
+     * loop, with an active mask instead of a break when a lane hits an invalid move. The ' '
+     * markers and the early return on a solution are applied afterwards in population order, so
+     * the outcome matches the scalar path. Each step runs on the {@link LockstepKernel}, which
+     * uses the Vector API when it can.
+     */
+    void evaluate_fitness_lockstep() {
+        generations.increment();
+        int boxCount = initialBoxCells.length;
+        int goalCount = level.goalCount();
+
+        int[] player = new int[LANES];
+        int[] boxes = new int[boxCount * LANES];
+        double[] fitness = new double[LANES];
+        boolean[] active = new boolean[LANES];
+        int[] invalidAt = new int[LANES];
+        int[] direction = new int[LANES];
+
+        for (int from = 0; from < population.length; from += LANES) {
+            int lanes = Math.min(LANES, population.length - from);
+            int maxLength = 0;
+            for (int lane = 0; lane < LANES; lane++) {
+                active[lane] = lane < lanes;
+                if (!active[lane]) continue;
+                player[lane] = startCell;
+                for (int b = 0; b < boxCount; b++) {
+                    boxes[b * LANES + lane] = initialBoxCells[b];
+                }
+                fitness[lane] = 0.0;
+                invalidAt[lane] = -1;
+                maxLength = Math.max(maxLength, population[from + lane].dna.length);
+            }
+
+            for (int i = 0; i < maxLength; i++) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    char[] dna = population[from + lane].dna;
+                    if (i >= dna.length) active[lane] = false;
+                    direction[lane] = active[lane] ? "UDLR".indexOf(dna[i]) : -1;
+                }
+                kernel.step(i, lanes, boxCount, player, boxes, fitness, active, invalidAt, direction);
+            }
+
+            for (int lane = 0; lane < lanes; lane++) {
+                Element element = population[from + lane];
+                evaluations.increment();
+                if (invalidAt[lane] >= 0) element.dna[invalidAt[lane]] = ' ';
+
+                int placedBoxes = 0;
+                for (int b = 0; b < boxCount; b++) {
+                    if (level.isGoal(boxes[b * LANES + lane])) placedBoxes++;
+                }
+                if (placedBoxes == goalCount) {
+                    element.fitness = Double.MAX_VALUE;
+                    this.bestElement = element;
+                    bestFitnessGauge.set(element.fitness);
+                    return;
+                }
+                element.fitness = fitness[lane] + placedBoxes * 1000;
+            }
+        }
+        bestFitnessGauge.set(getHighestElement().fitness);
+    }
+
+    /**
+     * Scores the population as {@link #evaluate_fitness_lockstep} does, one genome at a time on a
+     * {@link BitboardState}: the player steps with {@link BitboardState#move} and the boxes are
+     * read off the bitboard for the distance terms.
+     */
+    void evaluate_fitness_bitboard() {
+        generations.increment();
+        Bitboard board = level.bitboard();
+        int boxCount = initialBoxCells.length;
+        int goalCount = level.goalCount();
+        BitboardState start = BitboardState.of(board, startCell, initialBoxCells);
+
+        for (Element element : population) {
+            evaluations.increment();
+            BitboardState state = start.copy();
+            long[] boxes = state.boxes();
+            double fitness = 0.0;
+            for (int i = 0; i < element.dna.length; i++) {
+                int d = "UDLR".indexOf(element.dna[i]);
+                // Anything but U, D, L or R leaves the player where it is, as moveSokoban does.
+                if (d != -1 && !state.move(d)) {
+                    element.dna[i] = ' ';
+                    fitness = 0;
+                    break;
+                }
+
+                int player = state.player();
+                fitness -= 0.5;
+                int minBoxDistance = Integer.MAX_VALUE;
+                int totalDistance = 0;
+                for (int box = Bitboard.next(boxes, 0); box != -1; box = Bitboard.next(boxes, box + 1)) {
+                    int distance = Math.abs(rowOf[player] - rowOf[box]) + Math.abs(colOf[player] - colOf[box]);
+                    minBoxDistance = Math.min(minBoxDistance, distance);
+                    totalDistance += goalDistance[box];
+                }
+                fitness += boxCount / (minBoxDistance + 0.0000001);
+                fitness -= totalDistance * 0.1;
+            }
+
+            int placedBoxes = state.placedBoxes();
+            if (placedBoxes == goalCount) {
+                element.fitness = Double.MAX_VALUE;
+                this.bestElement = element;
+                bestFitnessGauge.set(element.fitness);
+                return;
+            }
+            element.fitness = fitness + placedBoxes * 1000;
+        }
+        bestFitnessGauge.set(getHighestElement().fitness);
+    }
+
+    private boolean isDeadlock(HashMap<Integer, int[]> boxPositions) {
+        for (int[] boxPos : boxPositions.values()) {
+            if (!level.isGoal(boxPos[0], boxPos[1])) {
+                if (isCornerDeadlock(boxPos) || isWallDeadlock(boxPos, boxPositions)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isCornerDeadlock(int[] boxPos) {
+        int x = boxPos[0], y = boxPos[1];
+        return (level.isWall(x - 1, y) && level.isWall(x, y - 1)) ||
+                (level.isWall(x - 1, y) && level.isWall(x, y + 1)) ||
+                (level.isWall(x + 1, y) && level.isWall(x, y - 1)) ||
+                (level.isWall(x + 1, y) && level.isWall(x, y + 1));
+    }
+
+    private boolean isWallDeadlock(int[] boxPos, HashMap<Integer, int[]> boxPositions) {
+        int x = boxPos[0], y = boxPos[1];
+        boolean horizontalWall = (level.isWall(x - 1, y) && level.isWall(x + 1, y));
+        boolean verticalWall = (level.isWall(x, y - 1) && level.isWall(x, y + 1));
+
+        if (horizontalWall) {
+            return boxPositions.containsKey(Level.cantorPair(x, y - 1)) ||
+                    boxPositions.containsKey(Level.cantorPair(x, y + 1));
+        }
+        if (verticalWall) {
+            return boxPositions.containsKey(Level.cantorPair(x - 1, y)) ||
+                    boxPositions.containsKey(Level.cantorPair(x + 1, y));
+        }
+        return false;
+    }
+
+    private boolean isCloserToGoal(int[] newPos, int[] oldPos) {
+        int oldMinDistance = Integer.MAX_VALUE;
+        int newMinDistance = Integer.MAX_VALUE;
+
+        for (int k = 0; k < level.goalCount(); k++) {
+            int gi = level.goalInOrder(k) / level.cols();
+            int gj = level.goalInOrder(k) % level.cols();
+            int oldDistance = Math.abs(oldPos[0] - gi) + Math.abs(oldPos[1] - gj);
+            int newDistance = Math.abs(newPos[0] - gi) + Math.abs(newPos[1] - gj);
+
+            oldMinDistance = Math.min(oldMinDistance, oldDistance);
+            newMinDistance = Math.min(newMinDistance, newDistance);
+        }
+
+        return newMinDistance < oldMinDistance;
+    }
+
+    private int[] moveSokoban(int[] position, char move) {
+        switch (move) {
+            case 'U':
+                return new int[]{position[0] - 1, position[1]};
+            case 'D':
+                return new int[]{position[0] + 1, position[1]};
+            case 'L':
+                return new int[]{position[0], position[1] - 1};
+            case 'R':
+                return new int[]{position[0], position[1] + 1};
+            default:
+                return position;
+        }
+    }
+
+    private boolean isValidMove(int[] newPos, HashMap<Integer, int[]> boxPositions, char move) {
+        int x = newPos[0];
+        int y = newPos[1];
+
+        if (level.isWall(x, y)) return false; // Wall
+
+        int pair = Level.cantorPair(x, y);
+        if (boxPositions.containsKey(pair)) {
+            int[] newBoxPos = moveSokoban(newPos, move);
+            int newPair = Level.cantorPair(newBoxPos[0], newBoxPos[1]);
+            if (level.isWall(newBoxPos[0], newBoxPos[1]) || boxPositions.containsKey(newPair)) {
+                return false; // Invalid move (into a wall or another box)
+            }
+        }
+
+        return true;
+    }
+
+    private void updateBoxPositions(int[] sokobanPos, HashMap<Integer, int[]> boxPositions, char move) {
+        int pair = Level.cantorPair(sokobanPos[0], sokobanPos[1]);
+        if (boxPositions.containsKey(pair)) {
+            int[] newBoxPos = moveSokoban(sokobanPos, move);
+            boxPositions.remove(pair);
+            boxPositions.put(Level.cantorPair(newBoxPos[0], newBoxPos[1]), newBoxPos);
+        }
+    }
+
+
+    private int calculateTotalManhattanDistance(HashMap<Integer, int[]> boxPositions) {
+        int totalDistance = 0;
+        for (int[] boxPos : boxPositions.values()) {
+            int minDistance = Integer.MAX_VALUE;
+            for (int k = 0; k < level.goalCount(); k++) {
+                int goal = level.goalInOrder(k);
+                int distance = Math.abs(boxPos[0] - goal / level.cols()) + Math.abs(boxPos[1] - goal % level.cols());
+                minDistance = Math.min(minDistance, distance);
+            }
+            totalDistance += minDistance;
+        }
+        return totalDistance;
+    }
+
+    private int countPlacedBoxes(HashMap<Integer, int[]> boxPositions) {
+        int count = 0;
+        for (int[] boxPos : boxPositions.values()) {
+            if (level.isGoal(boxPos[0], boxPos[1])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The moves a solved element plays: its DNA up to the first invalid move, which evaluation
+     * marks with ' '.
+     */
+    public String solution(Element element) {
+        String dna = new String(element.dna);
+        int end = dna.indexOf(' ');
+        return end < 0 ? dna : dna.substring(0, end);
+    }
+
+    public Element getHighestElement() {
+        if (bestElement != null) return bestElement;
+
+        Element highest = population[0];
+        for (Element element : population) {
+            if (element.fitness > highest.fitness) {
+                highest = element;
+            }
+        }
+        return highest;
+    }
+
+    public void reproduction() {
+        Element[] newPopulation = new Element[population_size];
+
+        // Elitism: Keep the best 10% of the population
+        int eliteSize = population_size / 10;
+        Arrays.sort(population, (a, b) -> Double.compare(b.fitness, a.fitness));
+        System.arraycopy(population, 0, newPopulation, 0, eliteSize);
+
+        // Check for stagnation
+        if (population[0].fitness > bestFitness) {
+            bestFitness = population[0].fitness;
+            stagnationCounter = 0;
+        } else {
+            stagnationCounter++;
+        }
+
+        // If stagnation occurs for too long, introduce more diversity
+        if (stagnationCounter > 5) {
+            for (int i = eliteSize; i < population_size; i++) {
+                newPopulation[i] = Element.getRandom(population[i].dna.length);
+            }
+            stagnationCounter = 0;
+        } else {
+            // Fill the rest of the population with mutated offspring
+            for (int i = eliteSize; i < population_size; i++) {
+                Element parent = tournamentSelection();
+                Element offspring = new Element(parent);
+                mutate(offspring, i);
+                newPopulation[i] = offspring;
+            }
+        }
+        population = newPopulation;
+    }
+
+    private void mutate(Element element, int index) {
+        char[] dir = {'U', 'D', 'L', 'R'};
+
+        // Adaptive mutation rate
+        double adaptiveMutationRate = initial_mutation_rate * (1 + (double) index / population_size);
+
+        for (int i = 0; i < element.dna.length; i++) {
+            if (random.nextDouble() < adaptiveMutationRate) {
+                // Intelligent mutation: higher chance to mutate to a different direction
+                char newDir;
+                do {
+                    newDir = dir[random.nextInt(4)];
+                } while (newDir == element.dna[i] && random.nextDouble() < 0.5);
+                element.dna[i] = newDir;
+            }
+        }
+    }
+
+    private Element tournamentSelection() {
+        int tournamentSize = 15;
+        Element best = null;
+        for (int i = 0; i < tournamentSize; i++) {
+            Element contestant = population[random.nextInt(population_size)];
+            if (best == null || contestant.fitness > best.fitness) {
+                best = contestant;
+            }
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,11 @@
+package Sokoban;
+
+class PushElement {
+    int[] genes;
+    double fitness;
+    int solvedAt = -1;
+
+    public PushElement(int[] genes) {
+        this.genes = genes;
+    }
+}
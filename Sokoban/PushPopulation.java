@@ -0,0 +1,313 @@
+package Sokoban;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Genetic solver over pushes instead of single moves. Each gene names a box (by its place in cell
+ * order at that point of the replay) and a direction, and the player walks to the push by the
+ * shortest path, so no gene is ever spent on walking. A gene whose push is impossible there is
+ * repaired in place to the next push that is possible, rather than ending the replay, and pushes
+ * onto dead squares count as impossible. New genomes come from one-point or uniform crossover of
+ * two tournament winners followed by mutation.
+ */
+class PushPopulation {
+    enum Crossover {ONE_POINT, UNIFORM}
+
+    final Level level;
+    final int populationSize;
+    final double mutationRate;
+    final double crossoverRate;
+    final Crossover crossover;
+    PushElement[] population;
+    PushElement bestElement;
+    Random random = new Random();
+
+    final SolverMetrics metrics = new SolverMetrics("pushGenetic");
+    private final LongAdder generations = metrics.counter("generations");
+    private final LongAdder evaluations = metrics.counter("evaluations");
+    private final LongAdder repairs = metrics.counter("repairs");
+    private final SolverMetrics.Gauge bestFitnessGauge = metrics.gauge("bestFitness");
+
+    private final int cells;
+    private final int boxCount;
+    private final int[] goalDistance;
+
+    public PushPopulation(Level level, int populationSize, double mutationRate, double crossoverRate,
+                          int genomeLength, Crossover crossover) {
+        this.level = level;
+        this.populationSize = populationSize;
+        this.mutationRate = mutationRate;
+        this.crossoverRate = crossoverRate;
+        this.crossover = crossover;
+        this.cells = level.rows() * level.cols();
+        this.boxCount = level.boxCount();
+        this.goalDistance = goalDistances();
+
+        population = new PushElement[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            int[] genes = new int[genomeLength];
+            for (int g = 0; g < genomeLength; g++) {
+                genes[g] = randomGene();
+            }
+            population[i] = new PushElement(genes);
+        }
+    }
+
+    private int randomGene() {
+        return random.nextInt(boxCount * 4);
+    }
+
+    // Fewest pushes from each cell to the nearest goal for a box on its own, by pulling boxes
+    // back from the goals. Dead squares are left at the cell count.
+    private int[] goalDistances() {
+        int[] distance = new int[cells];
+        Arrays.fill(distance, cells);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int cell = 0; cell < cells; cell++) {
+            if (level.isGoal(cell)) {
+                distance[cell] = 0;
+                queue.add(cell);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int d = 0; d < 4; d++) {
+                int from = level.neighbour(cell, d);
+                if (from != -1 && distance[from] == cells && level.neighbour(from, d) != -1) {
+                    distance[from] = distance[cell] + 1;
+                    queue.add(from);
+                }
+            }
+        }
+        return distance;
+    }
+
+    public void evaluate_fitness() {
+        generations.increment();
+        for (PushElement element : population) {
+            evaluations.increment();
+            evaluate(element);
+            if (element.solvedAt >= 0) {
+                bestElement = element;
+                bestFitnessGauge.set(element.fitness);
+                return;
+            }
+        }
+        bestFitnessGauge.set(getHighestElement().fitness);
+    }
+
+    // Replays the genes, repairing any that cannot be played. The fitness is the best score of
+    // any prefix: boxes on goals first, then how close the rest are, then how few pushes it took.
+    private void evaluate(PushElement element) {
+        Replay replay = new Replay();
+        double best = replay.score();
+        element.solvedAt = -1;
+        for (int g = 0; g < element.genes.length; g++) {
+            int gene = replay.playable(element.genes[g]);
+            if (gene == -1) break;
+            if (gene != element.genes[g]) {
+                element.genes[g] = gene;
+                repairs.increment();
+            }
+            replay.push(gene);
+            if (replay.solved()) {
+                element.solvedAt = g;
+                element.fitness = Double.MAX_VALUE;
+                return;
+            }
+            best = Math.max(best, replay.score() - 0.1 * (g + 1));
+        }
+        element.fitness = best;
+    }
+
+    /**
+     * The moves of a solved genome, walks included, or null if it does not solve the level.
+     */
+    public String moves(PushElement element) {
+        if (element.solvedAt < 0) return null;
+        Replay replay = new Replay();
+        StringBuilder moves = new StringBuilder();
+        for (int g = 0; g <= element.solvedAt; g++) {
+            int gene = replay.playable(element.genes[g]);
+            replay.walkTo(replay.behind(gene), moves);
+            moves.append(Level.MOVES[gene & 3]);
+            replay.push(gene);
+        }
+        return moves.toString();
+    }
+
+    public PushElement getHighestElement() {
+        if (bestElement != null) return bestElement;
+
+        PushElement highest = population[0];
+        for (PushElement element : population) {
+            if (element.fitness > highest.fitness) {
+                highest = element;
+            }
+        }
+        return highest;
+    }
+
+    public void reproduction() {
+        PushElement[] newPopulation = new PushElement[populationSize];
+
+        // Elitism: keep the best 10% as they are
+        int eliteSize = populationSize / 10;
+        Arrays.sort(population, (a, b) -> Double.compare(b.fitness, a.fitness));
+        System.arraycopy(population, 0, newPopulation, 0, eliteSize);
+
+        for (int i = eliteSize; i < populationSize; i++) {
+            PushElement parent = tournamentSelection();
+            PushElement offspring = random.nextDouble() < crossoverRate
+                    ? crossover(parent, tournamentSelection())
+                    : new PushElement(parent.genes.clone());
+            mutate(offspring);
+            newPopulation[i] = offspring;
+        }
+        population = newPopulation;
+    }
+
+    private PushElement crossover(PushElement a, PushElement b) {
+        int length = Math.min(a.genes.length, b.genes.length);
+        int[] genes = a.genes.clone();
+        if (crossover == Crossover.ONE_POINT) {
+            int cut = random.nextInt(length + 1);
+            System.arraycopy(b.genes, cut, genes, cut, length - cut);
+        } else {
+            for (int g = 0; g < length; g++) {
+                if (random.nextBoolean()) genes[g] = b.genes[g];
+            }
+        }
+        return new PushElement(genes);
+    }
+
+    private void mutate(PushElement element) {
+        for (int g = 0; g < element.genes.length; g++) {
+            if (random.nextDouble() < mutationRate) {
+                element.genes[g] = randomGene();
+            }
+        }
+    }
+
+    private PushElement tournamentSelection() {
+        int tournamentSize = 15;
+        PushElement best = null;
+        for (int i = 0; i < tournamentSize; i++) {
+            PushElement contestant = population[random.nextInt(populationSize)];
+            if (best == null || contestant.fitness > best.fitness) {
+                best = contestant;
+            }
+        }
+        return best;
+    }
+
+    // The position while a genome is replayed. Boxes are numbered in cell order.
+    final class Replay {
+        final boolean[] boxes = new boolean[cells];
+        final int[] boxCells = new int[boxCount];
+        final int[] distance = new int[cells];
+        final int[] queue = new int[cells];
+        int player;
+
+        Replay() {
+            for (int[] box : level.initBoxPositions().values()) {
+                boxes[level.cell(box[0], box[1])] = true;
+            }
+            int[] sokoban = level.sokoban();
+            player = level.cell(sokoban[0], sokoban[1]);
+            sortBoxes();
+            walkDistances();
+        }
+
+        // Returns gene, or the first gene after it (wrapping round) whose push can be made, or
+        // -1 if no push can be made at all.
+        int playable(int gene) {
+            int genes = boxCount * 4;
+            for (int t = 0; t < genes; t++) {
+                int candidate = (gene + t) % genes;
+                int box = boxCells[candidate >> 2];
+                int d = candidate & 3;
+                int behind = level.neighbour(box, d ^ 1);
+                int beyond = level.neighbour(box, d);
+                if (behind != -1 && distance[behind] >= 0 && beyond != -1 && !boxes[beyond]
+                        && !level.isDeadSquare(beyond)) {
+                    return candidate;
+                }
+            }
+            return -1;
+        }
+
+        int behind(int gene) {
+            return level.neighbour(boxCells[gene >> 2], (gene & 3) ^ 1);
+        }
+
+        void push(int gene) {
+            int box = boxCells[gene >> 2];
+            boxes[box] = false;
+            boxes[level.neighbour(box, gene & 3)] = true;
+            player = box;
+            sortBoxes();
+            walkDistances();
+        }
+
+        boolean solved() {
+            for (int box : boxCells) {
+                if (!level.isGoal(box)) return false;
+            }
+            return true;
+        }
+
+        double score() {
+            int placed = 0;
+            int total = 0;
+            for (int box : boxCells) {
+                if (level.isGoal(box)) placed++;
+                total += goalDistance[box];
+            }
+            return placed * 1000.0 - total * 10.0;
+        }
+
+        // Appends the shortest walk from the player to target, stepping down the distances.
+        void walkTo(int target, StringBuilder moves) {
+            int[] path = new int[distance[target]];
+            for (int cell = target, k = path.length - 1; k >= 0; k--) {
+                for (int d = 0; d < 4; d++) {
+                    int previous = level.neighbour(cell, d ^ 1);
+                    if (previous != -1 && distance[previous] == distance[cell] - 1 && !boxes[previous]) {
+                        path[k] = d;
+                        cell = previous;
+                        break;
+                    }
+                }
+            }
+            for (int d : path) {
+                moves.append(Level.MOVES[d]);
+            }
+        }
+
+        private void sortBoxes() {
+            int n = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                if (boxes[cell]) boxCells[n++] = cell;
+            }
+        }
+
+        private void walkDistances() {
+            Arrays.fill(distance, -1);
+            int head = 0, tail = 0;
+            distance[player] = 0;
+            queue[tail++] = player;
+            while (head < tail) {
+                int cell = queue[head++];
+                for (int d = 0; d < 4; d++) {
+                    int next = level.neighbour(cell, d);
+                    if (next != -1 && !boxes[next] && distance[next] < 0) {
+                        distance[next] = distance[cell] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+    }
+}
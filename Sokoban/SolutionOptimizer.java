@@ -0,0 +1,405 @@
+package Sokoban;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Shortens a solution found by any of the solvers. The moves are replayed into the sequence of
+ * positions after each push, with anything that is not a legal move skipped, so the genetic
+ * solver's ' ' markers and blocked moves do no harm. That push sequence is then improved in three
+ * steps:
+ * <ol>
+ *     <li>loops are cut: a position whose boxes and player area come back later is joined directly
+ *     to what follows the return;</li>
+ *     <li>each window of a few pushes is searched for the cheapest way between its two end
+ *     positions, windows running in parallel; a second pass shifts the windows by half their
+ *     width so detours across a window border are found too;</li>
+ *     <li>the walks between pushes are routed along shortest paths.</li>
+ * </ol>
+ * The result is checked by the {@link SolutionVerifier} and only returned if it solves the level.
+ */
+public final class SolutionOptimizer {
+    private static final int MAX_ROUNDS = 4;
+    private static final int SEARCH_LIMIT = 100_000;
+    // Shared by every optimizer built through optimize(Level, CharSequence), so solving many
+    // levels at once does not start a pool per solution.
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "solution-optimizer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Level level;
+    private final int window;
+    private final ExecutorService executor;
+
+    /**
+     * @param executor runs the window searches; it is not shut down by the optimizer
+     */
+    public SolutionOptimizer(Level level, int window, ExecutorService executor) {
+        this.level = level;
+        this.window = Math.max(2, window);
+        this.executor = executor;
+    }
+
+    /**
+     * Optimizes {@code moves} with windows of 8 pushes on a pool shared by all such calls, with a
+     * thread for every available processor.
+     */
+    public static String optimize(Level level, CharSequence moves) {
+        return new SolutionOptimizer(level, 8, WORKERS).optimize(moves);
+    }
+
+    /**
+     * Returns a solution no longer than the legal moves of {@code moves}, as a string of U, D, L
+     * and R, or null if those moves do not solve the level.
+     */
+    public String optimize(CharSequence moves) {
+        StringBuilder legal = new StringBuilder();
+        List<Position> pushes = replay(moves, legal);
+        if (pushes == null) return null;
+
+        pushes = cutLoops(pushes);
+        try {
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                boolean improved = searchWindows(pushes, 0);
+                improved |= searchWindows(pushes, window / 2);
+                if (!improved) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        String optimized = route(pushes);
+        if (optimized != null && optimized.length() <= legal.length() && verify(optimized)) {
+            return optimized;
+        }
+        return legal.toString();
+    }
+
+    // The position the level starts in followed by the position after every legal push, up to
+    // the push that solves the level, or null if it is never solved. The legal moves are copied
+    // into {@code legal}.
+    private List<Position> replay(CharSequence moves, StringBuilder legal) {
+        int player = level.cell(level.sokoban()[0], level.sokoban()[1]);
+        boolean[] boxes = new boolean[level.rows() * level.cols()];
+        for (int[] box : level.initBoxPositions().values()) {
+            boxes[level.cell(box[0], box[1])] = true;
+        }
+
+        List<Position> positions = new ArrayList<>();
+        positions.add(new Position(player, boxes));
+        if (solved(boxes)) return positions;
+
+        for (int k = 0; k < moves.length(); k++) {
+            int d = direction(moves.charAt(k));
+            if (d == -1) continue;
+            int next = level.neighbour(player, d);
+            if (next == -1) continue;
+            if (boxes[next]) {
+                int beyond = level.neighbour(next, d);
+                if (beyond == -1 || boxes[beyond]) continue;
+                boxes[next] = false;
+                boxes[beyond] = true;
+                player = next;
+                legal.append(Level.MOVES[d]);
+                positions.add(new Position(player, boxes));
+                if (solved(boxes)) return positions;
+            } else {
+                player = next;
+                legal.append(Level.MOVES[d]);
+            }
+        }
+        return null;
+    }
+
+    // Every move is legal and the boxes end on the goals.
+    private boolean verify(String moves) {
+        return new SolutionVerifier(level).verify(moves).isValid();
+    }
+
+    private boolean solved(boolean[] boxes) {
+        for (int cell = 0; cell < boxes.length; cell++) {
+            if (boxes[cell] && !level.isGoal(cell)) return false;
+        }
+        return true;
+    }
+
+    private static int direction(char move) {
+        for (int d = 0; d < 4; d++) {
+            if (Level.MOVES[d] == move) return d;
+        }
+        return -1;
+    }
+
+    // Drops every stretch of pushes that returns to the same boxes with the player in the same
+    // area: the push that followed the return can be made straight from the earlier visit.
+    private List<Position> cutLoops(List<Position> positions) {
+        List<Position> kept = new ArrayList<>();
+        Map<Position, Integer> seen = new HashMap<>();
+        for (Position position : positions) {
+            Position key = position.normalized(level);
+            Integer earlier = seen.get(key);
+            if (earlier != null) {
+                while (kept.size() > earlier + 1) {
+                    seen.remove(kept.remove(kept.size() - 1).normalized(level));
+                }
+                continue;
+            }
+            seen.put(key, kept.size());
+            kept.add(position);
+        }
+        return kept;
+    }
+
+    // Searches the windows starting at offset, offset + window, ... side by side and splices in
+    // every shorter path found. Returns whether anything improved.
+    private boolean searchWindows(List<Position> positions, int offset)
+            throws InterruptedException, ExecutionException {
+        List<Integer> starts = new ArrayList<>();
+        List<Callable<List<Position>>> tasks = new ArrayList<>();
+        for (int from = offset; from < positions.size() - 1; from += window) {
+            int to = Math.min(from + window, positions.size() - 1);
+            List<Position> original = new ArrayList<>(positions.subList(from, to + 1));
+            boolean last = to == positions.size() - 1;
+            starts.add(from);
+            tasks.add(() -> shortestBetween(original, last));
+        }
+
+        List<Future<List<Position>>> results = executor.invokeAll(tasks);
+        boolean improved = false;
+        // Spliced from the back so the earlier window starts stay valid.
+        for (int k = results.size() - 1; k >= 0; k--) {
+            List<Position> replacement = results.get(k).get();
+            if (replacement != null) {
+                int from = starts.get(k);
+                int to = Math.min(from + window, positions.size() - 1);
+                positions.subList(from, to + 1).clear();
+                positions.addAll(from, replacement);
+                improved = true;
+            }
+        }
+        return improved;
+    }
+
+    // Uniform-cost search over push positions from the first to the last position of the window,
+    // each push costing the walk to it plus one. Returns the cheaper path, both ends included,
+    // or null if the original is already as cheap (counting moves, then pushes). The window that
+    // ends the solution may leave the player anywhere.
+    private List<Position> shortestBetween(List<Position> original, boolean last) {
+        Position start = original.get(0);
+        Position target = original.get(original.size() - 1);
+        int bestCost = cost(original);
+        int bestPushes = original.size() - 1;
+
+        PriorityQueue<SearchNode> open = new PriorityQueue<>(
+                Comparator.<SearchNode>comparingInt(n -> n.cost).thenComparingInt(n -> n.pushes));
+        Map<Position, Integer> costs = new HashMap<>();
+        open.add(new SearchNode(start, null, 0, 0));
+        costs.put(start, 0);
+        int expanded = 0;
+        while (!open.isEmpty() && expanded++ < SEARCH_LIMIT) {
+            SearchNode node = open.poll();
+            if (node.cost > costs.get(node.position)) continue;
+            if (last ? Arrays.equals(node.position.boxes, target.boxes) : node.position.equals(target)) {
+                if (node.cost < bestCost || node.cost == bestCost && node.pushes < bestPushes) {
+                    LinkedList<Position> path = new LinkedList<>();
+                    for (SearchNode n = node; n != null; n = n.parent) {
+                        path.addFirst(n.position);
+                    }
+                    return path;
+                }
+                return null;
+            }
+            if (node.pushes >= bestPushes) continue;
+
+            boolean[] boxes = node.position.occupancy(level);
+            int[] distances = walkDistances(node.position.player, boxes);
+            for (int box : node.position.boxes) {
+                for (int d = 0; d < 4; d++) {
+                    int behind = level.neighbour(box, d ^ 1);
+                    int beyond = level.neighbour(box, d);
+                    if (behind == -1 || beyond == -1 || boxes[beyond] || distances[behind] < 0) continue;
+                    int cost = node.cost + distances[behind] + 1;
+                    if (cost > bestCost) continue;
+
+                    boxes[box] = false;
+                    boxes[beyond] = true;
+                    Position next = new Position(box, boxes);
+                    boxes[beyond] = false;
+                    boxes[box] = true;
+
+                    Integer known = costs.get(next);
+                    if (known == null || cost < known) {
+                        costs.put(next, cost);
+                        open.add(new SearchNode(next, node, cost, node.pushes + 1));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private int cost(List<Position> positions) {
+        int cost = 0;
+        for (int k = 1; k < positions.size(); k++) {
+            Position previous = positions.get(k - 1);
+            int[] push = push(previous, positions.get(k));
+            cost += walkDistances(previous.player, previous.occupancy(level))[push[0]] + 1;
+        }
+        return cost;
+    }
+
+    // The moves for the whole push sequence, walking the shortest way to every push.
+    private String route(List<Position> positions) {
+        StringBuilder moves = new StringBuilder();
+        for (int k = 1; k < positions.size(); k++) {
+            Position previous = positions.get(k - 1);
+            int[] push = push(previous, positions.get(k));
+            String walk = walk(previous.player, push[0], previous.occupancy(level));
+            if (walk == null) return null;
+            moves.append(walk).append(Level.MOVES[push[1]]);
+        }
+        return moves.toString();
+    }
+
+    // The cell the player pushes from and the direction of the single push between two positions.
+    private int[] push(Position from, Position to) {
+        int source = -1;
+        int destination = -1;
+        for (int box : from.boxes) {
+            if (Arrays.binarySearch(to.boxes, box) < 0) source = box;
+        }
+        for (int box : to.boxes) {
+            if (Arrays.binarySearch(from.boxes, box) < 0) destination = box;
+        }
+        for (int d = 0; d < 4; d++) {
+            if (level.neighbour(source, d) == destination) {
+                return new int[]{level.neighbour(source, d ^ 1), d};
+            }
+        }
+        throw new IllegalStateException("Positions are not one push apart");
+    }
+
+    private int[] walkDistances(int player, boolean[] boxes) {
+        int[] distances = new int[boxes.length];
+        Arrays.fill(distances, -1);
+        int[] queue = new int[boxes.length];
+        int head = 0, tail = 0;
+        distances[player] = 0;
+        queue[tail++] = player;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int next = level.neighbour(cell, d);
+                if (next != -1 && !boxes[next] && distances[next] < 0) {
+                    distances[next] = distances[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distances;
+    }
+
+    private String walk(int from, int to, boolean[] boxes) {
+        int[] distances = walkDistances(to, boxes);
+        if (distances[from] < 0) return null;
+        // Step downhill on the distance to the target.
+        StringBuilder path = new StringBuilder();
+        for (int cell = from; cell != to; ) {
+            for (int d = 0; d < 4; d++) {
+                int next = level.neighbour(cell, d);
+                if (next != -1 && distances[next] == distances[cell] - 1) {
+                    path.append(Level.MOVES[d]);
+                    cell = next;
+                    break;
+                }
+            }
+        }
+        return path.toString();
+    }
+
+    // The boxes, sorted, and the player's cell.
+    private static final class Position {
+        final int player;
+        final int[] boxes;
+
+        Position(int player, int[] boxes) {
+            this.player = player;
+            this.boxes = boxes;
+        }
+
+        Position(int player, boolean[] occupancy) {
+            this.player = player;
+            int count = 0;
+            for (boolean box : occupancy) {
+                if (box) count++;
+            }
+            this.boxes = new int[count];
+            int n = 0;
+            for (int cell = 0; cell < occupancy.length; cell++) {
+                if (occupancy[cell]) boxes[n++] = cell;
+            }
+        }
+
+        boolean[] occupancy(Level level) {
+            boolean[] occupancy = new boolean[level.rows() * level.cols()];
+            for (int box : boxes) {
+                occupancy[box] = true;
+            }
+            return occupancy;
+        }
+
+        // The same boxes with the player moved to the lowest cell it can walk to.
+        Position normalized(Level level) {
+            boolean[] occupancy = occupancy(level);
+            boolean[] seen = new boolean[occupancy.length];
+            Deque<Integer> queue = new ArrayDeque<>();
+            queue.add(player);
+            seen[player] = true;
+            int lowest = player;
+            while (!queue.isEmpty()) {
+                int cell = queue.poll();
+                lowest = Math.min(lowest, cell);
+                for (int d = 0; d < 4; d++) {
+                    int next = level.neighbour(cell, d);
+                    if (next != -1 && !occupancy[next] && !seen[next]) {
+                        seen[next] = true;
+                        queue.add(next);
+                    }
+                }
+            }
+            return new Position(lowest, boxes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Position)) return false;
+            Position position = (Position) o;
+            return player == position.player && Arrays.equals(boxes, position.boxes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * player + Arrays.hashCode(boxes);
+        }
+    }
+
+    private static final class SearchNode {
+        final Position position;
+        final SearchNode parent;
+        final int cost;
+        final int pushes;
+
+        SearchNode(Position position, SearchNode parent, int cost, int pushes) {
+            this.position = position;
+            this.parent = parent;
+            this.cost = cost;
+            this.pushes = pushes;
+        }
+    }
+}
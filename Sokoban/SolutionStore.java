@@ -0,0 +1,329 @@
+package Sokoban;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append-only file of results that carry over between runs: solutions, keyed by
+ * {@link Level#levelHash()}, and dead box configurations, keyed by {@link Level#layoutHash()} since
+ * they hold for every level on the same layout.
+ * <pre>
+ *   int   magic 'SKST'
+ *   int   format version
+ *   then records of
+ *   byte  kind (1 solution, 2 deadlock patterns)
+ *   long  key
+ *   int   payload length
+ *   byte[] payload
+ * </pre>
+ * A solution payload is its moves in ASCII. A deadlock payload lists patterns as varints: the
+ * pattern count, then per pattern its size and its sorted cells, each as the gap from the last.
+ * <p>
+ * Opening the store only reads the record headers: into a bloom filter of the keys present, and
+ * an index from each key to the offsets of its records. Payloads are read the first time their
+ * key is asked for, straight from those offsets, and a key the filter rules out does not even
+ * touch the index. A record cut short by a crash is dropped on open.
+ */
+public final class SolutionStore implements AutoCloseable {
+    private static final int MAGIC = 0x534B5354;
+    private static final int VERSION = 1;
+    private static final byte SOLUTION = 1;
+    private static final byte DEADLOCKS = 2;
+    private static final int HEADER = 8;
+    private static final int RECORD_HEADER = 13;
+
+    private static SolutionStore shared;
+
+    private final FileChannel channel;
+    private final BloomFilter keys;
+    // {payload offset, length} of every record, by key, in file order.
+    private final Map<Long, List<long[]>> solutionRecords;
+    private final Map<Long, List<long[]>> deadlockRecords;
+    private final Map<Long, String> solutions = new HashMap<>();
+    private final Map<Long, DeadlockPatterns> deadlocks = new HashMap<>();
+
+    private SolutionStore(FileChannel channel, BloomFilter keys,
+                          Map<Long, List<long[]>> solutionRecords, Map<Long, List<long[]>> deadlockRecords) {
+        this.channel = channel;
+        this.keys = keys;
+        this.solutionRecords = solutionRecords;
+        this.deadlockRecords = deadlockRecords;
+    }
+
+    /**
+     * The store named by the {@code sokoban.store} system property, opened on first use, or null
+     * when the property is not set.
+     */
+    public static synchronized SolutionStore shared() throws IOException {
+        String path = System.getProperty("sokoban.store");
+        if (path == null) return null;
+        if (shared == null) {
+            shared = open(Path.of(path));
+        }
+        return shared;
+    }
+
+    public static SolutionStore open(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                while (header.hasRemaining()) channel.write(header);
+            }
+
+            Map<Long, List<long[]>> solutionRecords = new HashMap<>();
+            Map<Long, List<long[]>> deadlockRecords = new HashMap<>();
+            long end = scan(file, channel, (kind, key, offset, length) -> {
+                Map<Long, List<long[]>> records = kind == SOLUTION ? solutionRecords
+                        : kind == DEADLOCKS ? deadlockRecords : null;
+                if (records != null) {
+                    records.computeIfAbsent(key, k -> new ArrayList<>(1)).add(new long[]{offset, length});
+                }
+            });
+            if (end < channel.size()) {
+                channel.truncate(end);
+            }
+
+            BloomFilter keys = new BloomFilter(solutionRecords.size() + deadlockRecords.size() + 4096);
+            for (long key : solutionRecords.keySet()) {
+                keys.add(SOLUTION, key);
+            }
+            for (long key : deadlockRecords.keySet()) {
+                keys.add(DEADLOCKS, key);
+            }
+            return new SolutionStore(channel, keys, solutionRecords, deadlockRecords);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns {@code level} with the dead patterns known for its layout attached, so its searches
+     * prune them and record any new ones for {@link #save}.
+     */
+    public Level attach(Level level) throws IOException {
+        return level.withDeadlockPatterns(deadlockPatterns(level));
+    }
+
+    /**
+     * A stored solution of {@code level}, or null.
+     */
+    public synchronized String solution(Level level) throws IOException {
+        long key = level.levelHash();
+        if (!solutions.containsKey(key)) {
+            String moves = null;
+            if (keys.mightContain(SOLUTION, key)) {
+                List<byte[]> payloads = read(SOLUTION, key);
+                if (!payloads.isEmpty()) {
+                    moves = new String(payloads.get(payloads.size() - 1), StandardCharsets.US_ASCII);
+                }
+            }
+            solutions.put(key, moves);
+        }
+        return solutions.get(key);
+    }
+
+    /**
+     * Records a solution of {@code level}, unless one at least as short is already stored.
+     */
+    public synchronized void addSolution(Level level, String moves) throws IOException {
+        long key = level.levelHash();
+        String known = solution(level);
+        if (known != null && known.length() <= moves.length()) return;
+        append(SOLUTION, key, moves.getBytes(StandardCharsets.US_ASCII));
+        solutions.put(key, moves);
+    }
+
+    /**
+     * The dead patterns known for the layout of {@code level}, loaded on first use. Every level on
+     * the same layout shares one instance.
+     */
+    public synchronized DeadlockPatterns deadlockPatterns(Level level) throws IOException {
+        long key = level.layoutHash();
+        DeadlockPatterns patterns = deadlocks.get(key);
+        if (patterns == null) {
+            patterns = new DeadlockPatterns();
+            if (keys.mightContain(DEADLOCKS, key)) {
+                for (byte[] payload : read(DEADLOCKS, key)) {
+                    for (int[] pattern : decode(payload)) {
+                        patterns.insert(pattern);
+                    }
+                }
+            }
+            deadlocks.put(key, patterns);
+        }
+        return patterns;
+    }
+
+    /**
+     * Appends the patterns found on this level's layout since the last save as one record.
+     */
+    public synchronized void save(Level level) throws IOException {
+        DeadlockPatterns patterns = deadlocks.get(level.layoutHash());
+        if (patterns == null) return;
+        List<int[]> unsaved = patterns.drainUnsaved();
+        if (!unsaved.isEmpty()) {
+            append(DEADLOCKS, level.layoutHash(), encode(unsaved));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(byte kind, long key, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+        record.put(kind).putLong(key).putInt(payload.length).put(payload);
+        record.flip();
+        long start = channel.size();
+        long position = start;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        keys.add(kind, key);
+        records(kind).computeIfAbsent(key, k -> new ArrayList<>(1)).add(new long[]{start + RECORD_HEADER, payload.length});
+    }
+
+    private Map<Long, List<long[]>> records(byte kind) {
+        return kind == SOLUTION ? solutionRecords : deadlockRecords;
+    }
+
+    // The payloads stored under (kind, key), oldest first, read from the offsets in the index.
+    private List<byte[]> read(byte kind, long key) throws IOException {
+        List<long[]> records = records(kind).getOrDefault(key, List.of());
+        List<byte[]> payloads = new ArrayList<>(records.size());
+        for (long[] record : records) {
+            ByteBuffer payload = ByteBuffer.allocate((int) record[1]);
+            while (payload.hasRemaining()) {
+                if (channel.read(payload, record[0] + payload.position()) < 0) throw new EOFException();
+            }
+            payloads.add(payload.array());
+        }
+        return payloads;
+    }
+
+    private interface RecordVisitor {
+        void visit(byte kind, long key, long offset, int length) throws IOException;
+    }
+
+    // Walks the record headers from the start of the file, skipping every payload, and returns
+    // the offset just past the last complete record.
+    private static long scan(Path file, FileChannel channel, RecordVisitor visitor) throws IOException {
+        long size = channel.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException(file + " is not a solution store");
+        }
+        long offset = HEADER;
+        while (offset + RECORD_HEADER <= size) {
+            byte kind = in.readByte();
+            long key = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || offset + RECORD_HEADER + length > size) break;
+            in.skipNBytes(length);
+            visitor.visit(kind, key, offset + RECORD_HEADER, length);
+            offset += RECORD_HEADER + length;
+        }
+        return offset;
+    }
+
+    static byte[] encode(List<int[]> patterns) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, patterns.size());
+        for (int[] pattern : patterns) {
+            writeVarint(out, pattern.length);
+            int last = 0;
+            for (int cell : pattern) {
+                writeVarint(out, cell - last);
+                last = cell;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static List<int[]> decode(byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        int count = readVarint(in);
+        List<int[]> patterns = new ArrayList<>(count);
+        for (int p = 0; p < count; p++) {
+            int[] pattern = new int[readVarint(in)];
+            int last = 0;
+            for (int k = 0; k < pattern.length; k++) {
+                last += readVarint(in);
+                pattern[k] = last;
+            }
+            patterns.add(pattern);
+        }
+        return patterns;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    // Bloom filter over (kind, key), sized for about 1% false positives at the expected count.
+    static final class BloomFilter {
+        private static final int HASHES = 7;
+
+        private final BitSet bits;
+        private final int size;
+
+        BloomFilter(int expected) {
+            this.size = Math.max(1024, expected * 10);
+            this.bits = new BitSet(size);
+        }
+
+        void add(byte kind, long key) {
+            long hash = mix(key + kind);
+            for (int k = 0; k < HASHES; k++) {
+                bits.set(index(hash, k));
+            }
+        }
+
+        boolean mightContain(byte kind, long key) {
+            long hash = mix(key + kind);
+            for (int k = 0; k < HASHES; k++) {
+                if (!bits.get(index(hash, k))) return false;
+            }
+            return true;
+        }
+
+        private int index(long hash, int k) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            return Math.floorMod(h1 + k * h2, size);
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
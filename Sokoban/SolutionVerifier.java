@@ -0,0 +1,263 @@
+package Sokoban;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks solutions against a level by replaying them. A solution is a string of U, D, L and R;
+ * lower case is accepted as well, as in the LURD notation, and a move may or may not push. Any
+ * other character, a step into a wall or a push against a wall or box is an error, and a solution
+ * is only valid if every move is legal and the boxes all stand on goals at the end.
+ * <p>
+ * The replay itself allocates nothing: it runs on a {@link Replay} that the caller keeps and
+ * reuses, so one thread can verify any number of solutions to a level without garbage. Batches
+ * of solutions, for any mix of levels, are verified in parallel by {@link #verifyAll}.
+ */
+public final class SolutionVerifier {
+    private static final byte FLOOR = 0;
+    private static final byte BOX = 1;
+
+    private final Level level;
+    private final byte[] start;
+    private final int startPlayer;
+    private final int startOffGoal;
+
+    public SolutionVerifier(Level level) {
+        this.level = level;
+        this.start = new byte[level.rows() * level.cols()];
+        int offGoal = 0;
+        for (int[] box : level.initBoxPositions().values()) {
+            int cell = level.cell(box[0], box[1]);
+            start[cell] = BOX;
+            if (!level.isGoal(cell)) offGoal++;
+        }
+        this.startOffGoal = offGoal;
+        this.startPlayer = level.cell(level.sokoban()[0], level.sokoban()[1]);
+    }
+
+    /**
+     * Usage: {@code java Sokoban.SolutionVerifier <levels> <solutions>}. The solutions file has a
+     * line {@code k: moves} for level k, as {@code SokobanSolver} prints them; other lines are
+     * ignored. Prints every failure and exits with status 1 if there was any.
+     */
+    public static void main(String[] args) throws Exception {
+        List<Level> corpus = Level.load(Path.of(args[0]));
+        List<Level> levels = new ArrayList<>();
+        List<String> solutions = new ArrayList<>();
+        List<Integer> numbers = new ArrayList<>();
+        for (String line : Files.readAllLines(Path.of(args[1]))) {
+            int colon = line.indexOf(':');
+            if (colon <= 0 || !line.substring(0, colon).trim().matches("\\d+")) continue;
+            int number = Integer.parseInt(line.substring(0, colon).trim());
+            if (number < 1 || number > corpus.size()) {
+                throw new IOException("No level " + number + " in " + args[0]);
+            }
+            levels.add(corpus.get(number - 1));
+            solutions.add(line.substring(colon + 1).trim());
+            numbers.add(number);
+        }
+
+        long startTime = System.nanoTime();
+        Result[] results = verifyAll(levels, solutions, Runtime.getRuntime().availableProcessors());
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        int failed = 0;
+        for (int k = 0; k < results.length; k++) {
+            if (!results[k].isValid()) {
+                failed++;
+                System.out.println(numbers.get(k) + ": " + results[k]);
+            }
+        }
+        System.out.printf("%d solutions verified, %d failed, in %.3f s (%.0f/s)%n",
+                results.length, failed, seconds, results.length / Math.max(seconds, 1e-9));
+        if (failed > 0) System.exit(1);
+    }
+
+    /**
+     * Why a replay failed, if it did.
+     */
+    public enum Failure {
+        NONE, UNKNOWN_MOVE, INTO_WALL, BLOCKED_PUSH, UNSOLVED
+    }
+
+    /**
+     * The outcome of one verification.
+     */
+    public static final class Result {
+        public final Failure failure;
+        /** Index of the offending character, or -1 if every move was legal. */
+        public final int errorIndex;
+        public final int moves;
+        public final int pushes;
+
+        Result(Failure failure, int errorIndex, int moves, int pushes) {
+            this.failure = failure;
+            this.errorIndex = errorIndex;
+            this.moves = moves;
+            this.pushes = pushes;
+        }
+
+        public boolean isValid() {
+            return failure == Failure.NONE;
+        }
+
+        @Override
+        public String toString() {
+            if (failure == Failure.NONE) return "solved in " + moves + " moves, " + pushes + " pushes";
+            if (errorIndex >= 0) return failure + " at move " + errorIndex;
+            return failure + " after " + moves + " moves, " + pushes + " pushes";
+        }
+    }
+
+    /**
+     * Scratch board for replays of one level. Not thread safe: every thread needs its own.
+     */
+    public final class Replay {
+        private final byte[] board = new byte[start.length];
+        Failure failure;
+        int errorIndex;
+        int moves;
+        int pushes;
+
+        public Failure failure() {
+            return failure;
+        }
+
+        public int errorIndex() {
+            return errorIndex;
+        }
+
+        public int moves() {
+            return moves;
+        }
+
+        public int pushes() {
+            return pushes;
+        }
+
+        public Result result() {
+            return new Result(failure, errorIndex, moves, pushes);
+        }
+
+        SolutionVerifier verifier() {
+            return SolutionVerifier.this;
+        }
+    }
+
+    public Replay newReplay() {
+        return new Replay();
+    }
+
+    /**
+     * Verifies one solution, allocating a scratch board for it.
+     */
+    public Result verify(CharSequence solution) {
+        Replay replay = newReplay();
+        verify(solution, replay);
+        return replay.result();
+    }
+
+    /**
+     * Replays {@code solution} on {@code replay}, which keeps the outcome, and returns true if
+     * it is a valid solution. Allocates nothing.
+     */
+    public boolean verify(CharSequence solution, Replay replay) {
+        byte[] board = replay.board;
+        System.arraycopy(start, 0, board, 0, start.length);
+        int player = startPlayer;
+        int offGoal = startOffGoal;
+        int pushes = 0;
+
+        for (int k = 0; k < solution.length(); k++) {
+            int d = direction(solution.charAt(k));
+            if (d == -1) return fail(replay, Failure.UNKNOWN_MOVE, k, pushes);
+            int next = level.neighbour(player, d);
+            if (next == -1) return fail(replay, Failure.INTO_WALL, k, pushes);
+            if (board[next] == BOX) {
+                int beyond = level.neighbour(next, d);
+                if (beyond == -1 || board[beyond] == BOX) return fail(replay, Failure.BLOCKED_PUSH, k, pushes);
+                board[next] = FLOOR;
+                board[beyond] = BOX;
+                if (level.isGoal(next)) offGoal++;
+                if (level.isGoal(beyond)) offGoal--;
+                pushes++;
+            }
+            player = next;
+        }
+
+        replay.moves = solution.length();
+        replay.pushes = pushes;
+        replay.errorIndex = -1;
+        replay.failure = offGoal == 0 ? Failure.NONE : Failure.UNSOLVED;
+        return offGoal == 0;
+    }
+
+    private static boolean fail(Replay replay, Failure failure, int index, int pushes) {
+        replay.failure = failure;
+        replay.errorIndex = index;
+        replay.moves = index;
+        replay.pushes = pushes;
+        return false;
+    }
+
+    private static int direction(char move) {
+        switch (move) {
+            case 'U':
+            case 'u':
+                return 0;
+            case 'D':
+            case 'd':
+                return 1;
+            case 'L':
+            case 'l':
+                return 2;
+            case 'R':
+            case 'r':
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Verifies {@code solutions.get(k)} against {@code levels.get(k)} for every k, spread over
+     * {@code threads} workers. Each worker builds one verifier and scratch board per distinct
+     * level it meets and reuses them for every solution to that level.
+     */
+    public static Result[] verifyAll(List<Level> levels, List<? extends CharSequence> solutions, int threads)
+            throws InterruptedException {
+        if (levels.size() != solutions.size()) {
+            throw new IllegalArgumentException(levels.size() + " levels but " + solutions.size() + " solutions");
+        }
+        Result[] results = new Result[levels.size()];
+        int workers = Math.max(1, Math.min(threads, results.length));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                int from = (int) ((long) results.length * w / workers);
+                int to = (int) ((long) results.length * (w + 1) / workers);
+                tasks.add(() -> {
+                    Map<Level, Replay> replays = new IdentityHashMap<>();
+                    for (int k = from; k < to; k++) {
+                        Replay replay = replays.computeIfAbsent(levels.get(k), level -> new SolutionVerifier(level).newReplay());
+                        replay.verifier().verify(solutions.get(k), replay);
+                        results[k] = replay.result();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> task : executor.invokeAll(tasks)) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+}
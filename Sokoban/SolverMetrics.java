@@ -0,0 +1,263 @@
+package Sokoban;
+
+import javax.management.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters and gauges for one solve. Engines register their counters and gauges when they
+ * are constructed and update them from the search loop; {@link #start()} then publishes them as a
+ * JMX MBean ({@code Sokoban:type=SolverMetrics,engine=...,solve=...}) until {@link #stop()}.
+ * <p>
+ * Two system properties turn on more output:
+ * <ul>
+ *     <li>{@code sokoban.metrics.interval} - milliseconds between log lines on stderr (default off)</li>
+ *     <li>{@code sokoban.metrics.dir} - directory that receives one CSV time series per solve</li>
+ * </ul>
+ */
+public final class SolverMetrics implements DynamicMBean {
+    private static final AtomicInteger SOLVES = new AtomicInteger();
+    private static final ScheduledExecutorService SAMPLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "solver-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final String engine;
+    private final String solve;
+    private final Map<String, LongAdder> counters = new LinkedHashMap<>();
+    private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+    private final Map<String, Double> rates = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastTotals = new HashMap<>();
+
+    private long startNanos;
+    private long lastSampleNanos;
+    private ObjectName objectName;
+    private ScheduledFuture<?> sampling;
+    private PrintWriter timeSeries;
+    private boolean logging;
+
+    public SolverMetrics(String engine) {
+        this.engine = engine;
+        this.solve = "solve-" + SOLVES.incrementAndGet();
+    }
+
+    /**
+     * Returns the counter with this name, creating it on first use. Counters must all be created
+     * before {@link #start()}.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Returns the gauge with this name, creating it on first use. Gauges must all be created
+     * before {@link #start()}.
+     */
+    public Gauge gauge(String name) {
+        return gauges.computeIfAbsent(name, n -> new Gauge());
+    }
+
+    public void start() {
+        startNanos = lastSampleNanos = System.nanoTime();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            lastTotals.put(counter.getKey(), counter.getValue().sum());
+        }
+
+        try {
+            objectName = new ObjectName("Sokoban:type=SolverMetrics,engine=" + engine + ",solve=" + solve);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            objectName = null;
+            System.err.println("Could not register " + engine + " metrics: " + e.getMessage());
+        }
+
+        long interval = Long.getLong("sokoban.metrics.interval", 0);
+        String dir = System.getProperty("sokoban.metrics.dir");
+        logging = interval > 0;
+        if (dir != null) {
+            try {
+                Path file = Path.of(dir).resolve(engine + "-" + solve + "-" + System.currentTimeMillis() + ".csv");
+                Files.createDirectories(file.getParent());
+                timeSeries = new PrintWriter(Files.newBufferedWriter(file));
+                timeSeries.println(String.join(",", columns()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (interval <= 0) interval = 1000;
+        }
+        if (interval > 0) {
+            sampling = SAMPLER.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() {
+        if (sampling != null) {
+            sampling.cancel(false);
+            sampling = null;
+        }
+        if (timeSeries != null || logging) {
+            try {
+                SAMPLER.submit(this::sample).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        if (timeSeries != null) {
+            timeSeries.close();
+            timeSeries = null;
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ignored) {
+            }
+            objectName = null;
+        }
+    }
+
+    // Runs on the sampler thread: refreshes the per-second rates and writes the log line and the
+    // time series row.
+    private synchronized void sample() {
+        long now = System.nanoTime();
+        double seconds = Math.max(now - lastSampleNanos, 1) / 1e9;
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            long total = counter.getValue().sum();
+            rates.put(counter.getKey(), (total - lastTotals.get(counter.getKey())) / seconds);
+            lastTotals.put(counter.getKey(), total);
+        }
+        lastSampleNanos = now;
+
+        List<String> values = new ArrayList<>();
+        for (String column : columns()) {
+            values.add(format(value(column)));
+        }
+        if (logging) {
+            StringBuilder line = new StringBuilder("[" + engine + " " + solve + "]");
+            List<String> columns = columns();
+            for (int k = 0; k < columns.size(); k++) {
+                line.append(' ').append(columns.get(k)).append('=').append(values.get(k));
+            }
+            System.err.println(line);
+        }
+        if (timeSeries != null) {
+            timeSeries.println(String.join(",", values));
+            timeSeries.flush();
+        }
+    }
+
+    private List<String> columns() {
+        List<String> columns = new ArrayList<>();
+        columns.add("elapsedSeconds");
+        for (String counter : counters.keySet()) {
+            columns.add(counter);
+            columns.add(counter + "PerSecond");
+        }
+        columns.addAll(gauges.keySet());
+        columns.add("heapUsedBytes");
+        return columns;
+    }
+
+    private Object value(String column) {
+        if (column.equals("elapsedSeconds")) {
+            return (System.nanoTime() - startNanos) / 1e9;
+        }
+        if (column.equals("heapUsedBytes")) {
+            return MEMORY.getHeapMemoryUsage().getUsed();
+        }
+        LongAdder counter = counters.get(column);
+        if (counter != null) {
+            return counter.sum();
+        }
+        Gauge gauge = gauges.get(column);
+        if (gauge != null) {
+            return gauge.get();
+        }
+        if (column.endsWith("PerSecond")) {
+            String name = column.substring(0, column.length() - "PerSecond".length());
+            if (counters.containsKey(name)) {
+                // Before the first sample, fall back to the average since the start.
+                Double rate = rates.get(name);
+                return rate != null ? rate : counters.get(name).sum() / (Math.max(System.nanoTime() - startNanos, 1) / 1e9);
+            }
+        }
+        return null;
+    }
+
+    private static String format(Object value) {
+        if (value instanceof Double) {
+            return String.format(Locale.ROOT, "%.2f", (Double) value);
+        }
+        return String.valueOf(value);
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = value(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Object value = value(attribute);
+            if (value != null) list.add(new Attribute(attribute, value));
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String column : columns()) {
+            String type = counters.containsKey(column) || column.equals("heapUsedBytes") ? "long" : "double";
+            attributes.add(new MBeanAttributeInfo(column, type, column, true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), engine + " search metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    /**
+     * A value the search overwrites as it goes, such as the open set size.
+     */
+    public static final class Gauge {
+        private volatile double value;
+
+        public void set(double value) {
+            this.value = value;
+        }
+
+        public double get() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package Sokoban;
+
+/**
+ * Loads the Vector API implementations built from {@code vector/}. They can only be linked when
+ * the JVM runs with {@code --add-modules jdk.incubator.vector}; without it, or when their system
+ * property turns them off, callers keep their plain loops. Each caller picks whether its vector
+ * code is on when the property is not set, by what it measured against the plain loop.
+ */
+final class VectorSupport {
+    static final String MODULE = "jdk.incubator.vector";
+
+    private VectorSupport() {
+    }
+
+    /**
+     * True if the module is there and {@code property}, or {@code byDefault} when it is not set,
+     * turns the vector code on.
+     */
+    static boolean enabled(String property, boolean byDefault) {
+        return Boolean.parseBoolean(System.getProperty(property, Boolean.toString(byDefault)))
+                && ModuleLayer.boot().findModule(MODULE).isPresent();
+    }
+
+    /**
+     * A new {@code className} built with the constructor taking {@code args}, as a {@code type},
+     * or null if it cannot be loaded.
+     */
+    static <T> T load(String property, boolean byDefault, String className, Class<T> type, Class<?>[] parameters,
+                      Object... args) {
+        if (!enabled(property, byDefault)) return null;
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor(parameters).newInstance(args));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -1,178 +1,17 @@
+import Sokoban.Bitboard;
+import Sokoban.Level;
+import Sokoban.PatternDatabase;
+import Sokoban.SolutionOptimizer;
+import Sokoban.SolutionStore;
+import Sokoban.SolutionVerifier;
+import Sokoban.SolverMetrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-
-class Node implements Comparable<Node> {
-    Node parent;
-    char dir;
-    int i, j;
-    int g;
-    HashMap<Integer, int[]> boxPositions;
-
-    public Node(Node parent, char dir, int i, int j, int g, HashMap<Integer, int[]> boxPositions) {
-        this.parent = parent;
-        this.dir = dir;
-        this.i = i;
-        this.j = j;
-        this.g = g;
-        this.boxPositions = new HashMap<>(boxPositions);
-    }
-
-    @Override
-    public int compareTo(Node o) {
-        return (this.g + this.heuristic()) - (o.g + o.heuristic());
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Node node = (Node) o;
-        return i == node.i && j == node.j && boxPositions.equals(node.boxPositions);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(i, j, boxPositions);
-    }
-
-    public List<Node> children() {
-        List<Node> children = new ArrayList<>();
-        int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
-        char[] dirChars = {'U', 'D', 'L', 'R'};
-
-        for (int d = 0; d < 4; d++) {
-            int ni = i + directions[d][0];
-            int nj = j + directions[d][1];
-
-            if (SokobanSolver.board[ni][nj] != 'X') {
-                HashMap<Integer, int[]> newBoxPositions = new HashMap<>(boxPositions);
-                int key = SokobanSolver.cantorPair(ni, nj);
-
-                if (newBoxPositions.containsKey(key)) {
-                    int nni = ni + directions[d][0];
-                    int nnj = nj + directions[d][1];
-                    if (SokobanSolver.board[nni][nnj] != 'X' && !newBoxPositions.containsKey(SokobanSolver.cantorPair(nni, nnj))) {
-                        newBoxPositions.put(SokobanSolver.cantorPair(nni, nnj), new int[]{nni, nnj});
-                        newBoxPositions.remove(key);
-                        children.add(new Node(this, dirChars[d], ni, nj, g + 1, newBoxPositions));
-                    }
-                } else {
-                    children.add(new Node(this, dirChars[d], ni, nj, g + 1, newBoxPositions));
-                }
-            }
-        }
-        return children;
-    }
-
-    public boolean hasDeadlock() {
-        for (int[] box : boxPositions.values()) {
-            if (isBoxStuck(box[0], box[1]) && !SokobanSolver.goalPositions.containsKey(SokobanSolver.cantorPair(box[0], box[1]))) {
-                return true;
-            }
-        }
-        return hasGroupStuck();
-    }
-
-    private boolean hasGroupStuck() {
-        Set<Integer> checkedBoxes = new HashSet<>();
-        for (int[] box : boxPositions.values()) {
-            int boxKey = SokobanSolver.cantorPair(box[0], box[1]);
-            if (!checkedBoxes.contains(boxKey) && !SokobanSolver.goalPositions.containsKey(boxKey)) {
-                Set<Integer> group = new HashSet<>();
-                if (dfsGroupStuck(box[0], box[1], group) && !canMoveAny(group)) {
-                    return true;
-                }
-                checkedBoxes.addAll(group);
-            }
-        }
-        return false;
-    }
-
-    private boolean dfsGroupStuck(int bi, int bj, Set<Integer> group) {
-        int key = SokobanSolver.cantorPair(bi, bj);
-        if (group.contains(key) || SokobanSolver.goalPositions.containsKey(key)) {
-            return false;
-        }
-        if (!boxPositions.containsKey(key)) {
-            return false;
-        }
-
-        group.add(key);
-
-        int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
-        for (int[] dir : directions) {
-            int ni = bi + dir[0];
-            int nj = bj + dir[1];
-            dfsGroupStuck(ni, nj, group);
-        }
-
-        return true;
-    }
-
-    private boolean canMoveAny(Set<Integer> group) {
-        for (int key : group) {
-            int[] pos = SokobanSolver.inverseCantorPair(key);
-            if (canMoveBox(pos[0], pos[1], group)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean canMoveBox(int bi, int bj, Set<Integer> group) {
-        int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
-        for (int[] dir : directions) {
-            int ni = bi + dir[0];
-            int nj = bj + dir[1];
-            int oppositeI = bi - dir[0];
-            int oppositeJ = bj - dir[1];
-
-            if (SokobanSolver.board[ni][nj] != 'X' &&
-                    !group.contains(SokobanSolver.cantorPair(ni, nj)) &&
-                    (SokobanSolver.board[oppositeI][oppositeJ] != 'X' ||
-                            SokobanSolver.goalPositions.containsKey(SokobanSolver.cantorPair(oppositeI, oppositeJ))) &&
-                    !group.contains(SokobanSolver.cantorPair(oppositeI, oppositeJ))) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean isBoxStuck(int bi, int bj) {
-        boolean horizontalBlocked = (isBlocked(bi, bj - 1) && isBlocked(bi, bj + 1));
-        boolean verticalBlocked = (isBlocked(bi - 1, bj) && isBlocked(bi + 1, bj));
-        return horizontalBlocked && verticalBlocked;
-    }
-
-    private boolean isBlocked(int i, int j) {
-        return SokobanSolver.board[i][j] == 'X' ||
-                (boxPositions.containsKey(SokobanSolver.cantorPair(i, j)) &&
-                        !SokobanSolver.goalPositions.containsKey(SokobanSolver.cantorPair(i, j)));
-    }
-
-    public int heuristic() {
-        int totalDistance = 0;
-        int minBoxDistance = Integer.MAX_VALUE;
-
-        for (Map.Entry<Integer, int[]> entry : boxPositions.entrySet()) {
-            int[] box = entry.getValue();
-            int minGoalDistance = Integer.MAX_VALUE;
-
-            for (int[] goal : SokobanSolver.goalPositions.values()) {
-                int distance = Math.abs(box[0] - goal[0]) + Math.abs(box[1] - goal[1]);
-                minGoalDistance = Math.min(minGoalDistance, distance);
-            }
-
-            totalDistance += minGoalDistance;
-
-            if (!SokobanSolver.goalPositions.containsKey(entry.getKey())) {
-                int boxDistance = Math.abs(i - box[0]) + Math.abs(j - box[1]);
-                minBoxDistance = Math.min(minBoxDistance, boxDistance);
-            }
-        }
-
-        return totalDistance + (minBoxDistance == Integer.MAX_VALUE ? 0 : minBoxDistance);
-    }
-}
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 class SokobanSolver {
     /*
@@ -190,7 +29,7 @@ class SokobanSolver {
     };
      */
 
-    static char[][] board = {
+    static final char[][] board = {
             {'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X'},
             {'X', 'S', '.', '.', 'X', '.', '.', '.', '#', 'E', 'X'},
             {'X', '.', '.', '.', 'X', '.', '.', '.', '#', 'E', 'X'},
@@ -204,98 +43,507 @@ class SokobanSolver {
             {'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X', 'X'}
     };
 
-    static HashMap<Integer, int[]> goalPositions = getGoalPositions();
-    static HashMap<Integer, int[]> initBoxPositions = getInitBoxPositions();
-    static int[] sokoban = getSokobanPosition();
+    static final double ANYTIME_WEIGHT = 5.0;
+    static final double ANYTIME_STEP = 0.5;
+
+    final Level level;
+    final SolverMetrics metrics = new SolverMetrics("astar");
+    private final LongAdder expanded = metrics.counter("expanded");
+    private final LongAdder generated = metrics.counter("generated");
+    private final LongAdder duplicates = metrics.counter("duplicates");
+    private final LongAdder deadlocks = metrics.counter("deadlocks");
+    private final SolverMetrics.Gauge openSize = metrics.gauge("openSize");
+    private final SolverMetrics.Gauge closedSize = metrics.gauge("closedSize");
+    private final SolverMetrics.Gauge bestF = metrics.gauge("bestF");
+    private final SolverMetrics.Gauge bestH = metrics.gauge("bestH");
+    private final SolverMetrics.Gauge weight = metrics.gauge("weight");
+    private final SolverMetrics.Gauge bound = metrics.gauge("bound");
+
+    SokobanSolver(Level level) {
+        this.level = level;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            List<Level> levels = new ArrayList<>();
+            for (Level level : Level.load(Path.of(args[0]))) {
+                levels.add(PatternDatabase.attach(level));
+            }
+            List<String> solutions = solveAll(levels, Runtime.getRuntime().availableProcessors());
+            for (int k = 0; k < solutions.size(); k++) {
+                System.out.println((k + 1) + ": " + (solutions.get(k) == null ? "No solution." : solutions.get(k)));
+            }
+            return;
+        }
+
+        String solution = solve(PatternDatabase.attach(new Level(board)));
+        System.out.println(solution == null ? "No solution." : solution);
+    }
 
-    public static void main(String[] args) {
-        Node solution = a_star();
+    /**
+     * Solves one level and returns its moves, or null. When {@code sokoban.store} names a
+     * {@link SolutionStore}, a level solved before is answered from it, and the search prunes the
+     * dead box configurations found on this layout before and saves the ones it finds.
+     */
+    static String solve(Level level) throws IOException {
+        SolutionStore store = SolutionStore.shared();
+        if (store == null)
+            return optimize(level, search(level));
+
+        // A stored solution is only trusted if it still replays; otherwise the level is searched again.
+        String known = store.solution(level);
+        if (known != null && new SolutionVerifier(level).verify(known).isValid())
+            return known;
+
+        Node solution;
+        try {
+            solution = search(store.attach(level));
+        } finally {
+            store.save(level);
+        }
+        String sequence = optimize(level, solution);
+        if (sequence != null)
+            store.addSolution(level, sequence);
+        return sequence;
+    }
+
+    // The solution's moves after a pass of the SolutionOptimizer, which mostly pays off for
+    // anytime solutions found under a high weight.
+    private static String optimize(Level level, Node solution) {
         if (solution == null)
-            System.out.println("No solution.");
-        else
-            System.out.println(getSequence(solution));
+            return null;
+        String sequence = SolutionOptimizer.optimize(level, getSequence(solution));
+        SolutionVerifier.Result result = new SolutionVerifier(level).verify(sequence == null ? "" : sequence);
+        if (!result.isValid())
+            throw new IllegalStateException("Search returned an invalid solution: " + result);
+        return sequence;
+    }
+
+    // Plain A*, or the anytime search when sokoban.anytime gives a time budget in milliseconds.
+    // Each improved anytime solution is logged to stderr as it is found.
+    private static Node search(Level level) {
+        SokobanSolver solver = new SokobanSolver(level);
+        long budget = Long.getLong("sokoban.anytime", 0);
+        if (budget <= 0)
+            return solver.a_star();
+
+        String name = Long.toHexString(level.levelHash());
+        return solver.anytime(ANYTIME_WEIGHT, ANYTIME_STEP, System.nanoTime() + budget * 1_000_000,
+                found -> System.err.printf(Locale.ROOT, "[anytime %s] cost=%d bound=%.2f weight=%.1f after %d ms%n",
+                        name, found.node.g, found.bound, found.weight, found.elapsedMillis));
+    }
+
+    /**
+     * Solves every level on its own thread from a pool of {@code threads} workers. The levels are
+     * only read, so the same {@link Level} may appear more than once in the list.
+     */
+    static List<String> solveAll(List<Level> levels, int threads) throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (Level level : levels) {
+                futures.add(executor.submit(() -> solve(level)));
+            }
+
+            List<String> solutions = new ArrayList<>();
+            for (Future<String> future : futures) {
+                solutions.add(future.get());
+            }
+            return solutions;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Set -Dsokoban.astar.eager=true to expand with Node.children() as before, for comparison.
+    // The lazy successors work on the HashMap board, so A* on bitboards always expands eagerly.
+    static final boolean LAZY = !Boolean.getBoolean("sokoban.astar.eager");
+
+    Node a_star() {
+        return LAZY && !Bitboard.SELECTED ? a_star_lazy() : a_star_eager();
     }
 
-    private static Node a_star() {
-        Node node = new Node(null, '\0', sokoban[0], sokoban[1], 0, initBoxPositions);
+    /**
+     * A* with children generated one at a time by {@link Successors}. A step that leads to a
+     * closed state or a deadlock is rejected before its node is built, and a child that solves
+     * the level is returned as soon as it is generated rather than when it is polled.
+     */
+    Node a_star_lazy() {
+        int[] sokoban = level.sokoban();
+        Node node = new Node(level, null, '\0', sokoban[0], sokoban[1], 0, level.initBoxPositions());
+        if (node.isSolved())
+            return node;
 
         PriorityQueue<Node> open = new PriorityQueue<>();
         HashSet<Node> visited = new HashSet<>();
+        Successors successors = new Successors(visited);
 
         open.add(node);
-        while (!open.isEmpty()) {
-            Node current = open.poll();
-            if (current.hasDeadlock())
-                continue;
-            if (current.heuristic() == 0)
-                return current;
+        bestH.set(node.heuristic());
+        metrics.start();
+        try {
+            if (isDead(node))
+                return null;
+            while (!open.isEmpty()) {
+                Node current = open.poll();
+                if (!visited.add(current)) {
+                    duplicates.increment();
+                    continue;
+                }
+                int h = current.heuristic();
 
-            for (Node c : current.children()) {
-                if (!visited.contains(c))
+                expanded.increment();
+                bestF.set(current.g + h);
+                if (h < bestH.get())
+                    bestH.set(h);
+
+                successors.reset(current);
+                for (Node c = successors.next(); c != null; c = successors.next()) {
+                    if (successors.solved())
+                        return c;
                     open.add(c);
+                }
+                openSize.set(open.size());
+                closedSize.set(visited.size());
             }
-            visited.add(current);
+        } finally {
+            metrics.stop();
         }
 
         return null;
     }
 
-    private static String getSequence(Node solution) {
-        StringBuilder sequence = new StringBuilder();
-        Stack<Character> stack = new Stack<>();
+    Node a_star_eager() {
+        int[] sokoban = level.sokoban();
+        Node node = new Node(level, null, '\0', sokoban[0], sokoban[1], 0, level.initBoxPositions());
 
-        while (solution.parent != null) {
-            stack.add(solution.dir);
-            solution = solution.parent;
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        HashSet<Node> visited = new HashSet<>();
+
+        open.add(node);
+        bestH.set(node.heuristic());
+        metrics.start();
+        try {
+            while (!open.isEmpty()) {
+                Node current = open.poll();
+                if (isDead(current))
+                    continue;
+                int h = current.heuristic();
+                if (h == 0)
+                    return current;
+
+                expanded.increment();
+                bestF.set(current.g + h);
+                if (h < bestH.get())
+                    bestH.set(h);
+
+                for (Node c : current.children()) {
+                    generated.increment();
+                    if (!visited.contains(c))
+                        open.add(c);
+                    else
+                        duplicates.increment();
+                }
+                visited.add(current);
+                openSize.set(open.size());
+                closedSize.set(visited.size());
+            }
+        } finally {
+            metrics.stop();
         }
 
-        while (!stack.isEmpty()) {
-            sequence.append(stack.pop());
+        return null;
+    }
+
+    /**
+     * Generates the children of one node on demand, in the order of {@link Node#children()}. Each
+     * step is first tried without a copy: a walk on the parent's own box map, a push on a
+     * {@link PushedBoxes} view of it with the one box moved. A probe node pointed at the result
+     * is looked up in the closed set and checked for deadlocks, and only a step that passes gets
+     * its node and map copy. Pushes that {@link Node#macroPush} may extend also get the macro
+     * child, found and checked the same way on the view, which is handed out before the single
+     * push. The parent's map and box arrays are only read.
+     */
+    private final class Successors {
+        private final Set<Node> closed;
+        private final Node probe = new Node(level);
+        private final PushedBoxes pushed = new PushedBoxes();
+        private Node parent;
+        private int d;
+        private boolean solved;
+        private Node pending; // the single push that follows a macro child
+
+        Successors(Set<Node> closed) {
+            this.closed = closed;
+        }
+
+        void reset(Node parent) {
+            this.parent = parent;
+            this.d = 0;
+            this.pending = null;
+        }
+
+        // True if the child last returned by next() solves the level.
+        boolean solved() {
+            return solved;
+        }
+
+        Node next() {
+            if (pending != null) {
+                Node child = pending;
+                pending = null;
+                solved = child.isSolved();
+                return child;
+            }
+            while (d < 4) {
+                Node child = step(d++);
+                if (child != null)
+                    return child;
+            }
+            return null;
+        }
+
+        private Node step(int d) {
+            int ni = parent.i + Level.DIRECTIONS[d][0];
+            int nj = parent.j + Level.DIRECTIONS[d][1];
+            if (level.isWall(ni, nj))
+                return null;
+            generated.increment();
+
+            Map<Integer, int[]> boxes = parent.boxPositions;
+            int key = Level.cantorPair(ni, nj);
+            if (!boxes.containsKey(key)) {
+                // A walk leaves the boxes alone, so it cannot make a deadlock or a solution.
+                if (isClosed(ni, nj, boxes, parent.boxKeySum))
+                    return null;
+                solved = false;
+                return new Node(level, parent, Level.MOVES[d], ni, nj, parent.g + 1, boxes);
+            }
+
+            int nni = ni + Level.DIRECTIONS[d][0];
+            int nnj = nj + Level.DIRECTIONS[d][1];
+            int newKey = Level.cantorPair(nni, nnj);
+            if (level.isWall(nni, nnj) || boxes.containsKey(newKey))
+                return null;
+
+            Node macro = null;
+            boolean macroSolved = false;
+            if (parent.mayExtendPush(d, ni, nj, nni, nnj)) {
+                pushed.reset(boxes, parent.boxKeySum, key, nni, nnj);
+                String moves = parent.macroPush(d, ni, nj, pushed);
+                if (moves != null) {
+                    int player = Node.macroPlayer(level, moves, pushed);
+                    if (!isClosed(player / level.cols(), player % level.cols(), pushed, pushed.keySum()) && !isDead(probe)) {
+                        macroSolved = probe.isSolved();
+                        macro = parent.macroChild(moves, pushed);
+                    }
+                }
+            }
+            Node single = push(d, ni, nj, key, nni, nnj);
+            if (macro == null)
+                return single;
+            pending = single;
+            solved = macroSolved;
+            return macro;
+        }
+
+        // The single push of the box at key onto (nni, nnj), or null if it is closed or dead.
+        private Node push(int d, int ni, int nj, int key, int nni, int nnj) {
+            pushed.reset(parent.boxPositions, parent.boxKeySum, key, nni, nnj);
+            if (isClosed(ni, nj, pushed, pushed.keySum()) || isDead(probe))
+                return null;
+            solved = probe.isSolved();
+            return new Node(level, parent, Level.MOVES[d], ni, nj, parent.g + 1, pushed);
+        }
+
+        private boolean isClosed(int i, int j, Map<Integer, int[]> boxes, int boxKeySum) {
+            probe.i = i;
+            probe.j = j;
+            probe.boxPositions = boxes;
+            probe.boxKeySum = boxKeySum;
+            if (!closed.contains(probe))
+                return false;
+            duplicates.increment();
+            return true;
         }
-        return sequence.toString();
     }
 
-    private static int[] getSokobanPosition() {
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                if (board[i][j] == 'S')
-                    return new int[]{i, j};
+    private boolean isDead(Node node) {
+        int[] deadlock = node.deadlock();
+        if (deadlock == null)
+            return false;
+        deadlocks.increment();
+        // Single stuck boxes are found again at no cost; only groups are worth keeping.
+        if (deadlock.length > 1 && level.deadlockPatterns() != null)
+            level.deadlockPatterns().add(deadlock);
+        return true;
+    }
+
+    /**
+     * Anytime repairing A* (ARA*). Searches with f = g + weight * h to find a first solution fast,
+     * then lowers the weight by {@code step} down to 1, each time carrying the open list and the
+     * best known g of every state over to the next search instead of starting again. Every better
+     * solution is passed to {@code listener} with a bound on how far its cost can be from the
+     * optimum. The search heuristic may overestimate, so the bound is taken against
+     * {@link Node#lowerBound()} rather than the weight. Returns the best solution found by {@code deadline} (a {@link System#nanoTime()}
+     * value), or null if there was none.
+     */
+    Node anytime(double weight, double step, long deadline, Consumer<AnytimeSolution> listener) {
+        long start = System.nanoTime();
+        int[] sokoban = level.sokoban();
+        Node node = new Node(level, null, '\0', sokoban[0], sokoban[1], 0, level.initBoxPositions());
+
+        AnytimeSearch search = new AnytimeSearch();
+        search.best.put(node, node);
+        if (node.h() == 0)
+            search.solution = node;
+        else
+            search.open.add(node);
+        bestH.set(node.h());
+
+        metrics.start();
+        try {
+            double w = Math.max(weight, 1);
+            while (true) {
+                this.weight.set(w);
+                search.reorder(w);
+                boolean finished = improvePath(search, w, deadline);
+                if (search.solution != null && search.solution != search.reported) {
+                    search.reported = search.solution;
+                    double bound = search.solution.g / (double) search.lowerBound();
+                    this.bound.set(bound);
+                    listener.accept(new AnytimeSolution(search.solution, getSequence(search.solution),
+                            bound, w, (System.nanoTime() - start) / 1_000_000));
+                }
+                if (!finished || w <= 1 || search.open.isEmpty() && search.incons.isEmpty())
+                    return search.solution;
+                w = Math.max(1, w - step);
+                search.open.addAll(search.incons);
+                search.incons.clear();
+                search.closed.clear();
             }
+        } finally {
+            metrics.stop();
         }
-        return new int[]{-1, -1};
     }
 
-    private static HashMap<Integer, int[]> getGoalPositions() {
-        HashMap<Integer, int[]> goalPositions = new HashMap<>();
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                if (board[i][j] == 'E')
-                    goalPositions.put(cantorPair(i, j), new int[]{i, j});
+    // Expands states in order of weighted f until no open state could lead to a cheaper solution
+    // than the incumbent. Returns false if the deadline passed first.
+    private boolean improvePath(AnytimeSearch search, double w, long deadline) {
+        while (!search.open.isEmpty()) {
+            Node current = search.open.peek();
+            if (search.best.get(current) != current) {
+                search.open.poll();
+                continue;
             }
+            if (search.solution != null && search.solution.g <= current.g + w * current.h())
+                return true;
+            if (System.nanoTime() - deadline > 0)
+                return false;
+
+            search.open.poll();
+            if (isDead(current))
+                continue;
+            search.closed.add(current);
+            expanded.increment();
+            bestF.set(current.g + current.h());
+            if (current.h() < bestH.get())
+                bestH.set(current.h());
+
+            for (Node c : current.children()) {
+                generated.increment();
+                Node known = search.best.get(c);
+                if (known != null && known.g <= c.g) {
+                    duplicates.increment();
+                    continue;
+                }
+                search.best.put(c, c);
+                if (c.h() == 0) {
+                    if (search.solution == null || c.g < search.solution.g)
+                        search.solution = c;
+                } else if (search.closed.contains(c)) {
+                    search.incons.add(c);
+                } else {
+                    search.open.add(c);
+                }
+            }
+            openSize.set(search.open.size());
+            closedSize.set(search.best.size());
         }
-        return goalPositions;
+        return true;
     }
 
-    private static HashMap<Integer, int[]> getInitBoxPositions() {
-        HashMap<Integer, int[]> boxPositions = new HashMap<>();
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                if (board[i][j] == '#')
-                    boxPositions.put(cantorPair(i, j), new int[]{i, j});
+    // The lists ARA* keeps between its searches: OPEN, CLOSED, INCONS (states improved after they
+    // were closed) and the best node found for every state, which also tells stale entries apart.
+    private static final class AnytimeSearch {
+        final HashMap<Node, Node> best = new HashMap<>();
+        final HashSet<Node> closed = new HashSet<>();
+        final List<Node> incons = new ArrayList<>();
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        Node solution;
+        Node reported;
+
+        void reorder(double w) {
+            PriorityQueue<Node> reordered = new PriorityQueue<>(Math.max(1, open.size()),
+                    Comparator.comparingDouble(n -> n.g + w * n.h()));
+            for (Node node : open) {
+                if (best.get(node) == node)
+                    reordered.add(node);
+            }
+            open = reordered;
+        }
+
+        // The lowest g plus admissible estimate among the states still to be searched, which no
+        // solution can beat.
+        int lowerBound() {
+            int bound = solution.g;
+            for (Node node : open) {
+                if (best.get(node) == node)
+                    bound = Math.min(bound, node.g + node.lowerBound());
+            }
+            for (Node node : incons) {
+                bound = Math.min(bound, node.g + node.lowerBound());
             }
+            return Math.max(bound, 1);
         }
-        return boxPositions;
     }
 
-    public static int cantorPair(int x, int y) {
-        return (x + y) * (x + y + 1) / 2 + y;
+    /**
+     * One solution reported by {@link #anytime}: its cost is at most {@code bound} times the optimum.
+     */
+    static final class AnytimeSolution {
+        final Node node;
+        final String moves;
+        final double bound;
+        final double weight;
+        final long elapsedMillis;
+
+        AnytimeSolution(Node node, String moves, double bound, double weight, long elapsedMillis) {
+            this.node = node;
+            this.moves = moves;
+            this.bound = bound;
+            this.weight = weight;
+            this.elapsedMillis = elapsedMillis;
+        }
     }
 
-    public static int[] inverseCantorPair(int z) {
-        int w = (int) Math.floor((Math.sqrt(8 * z + 1) - 1) / 2);
-        int t = (w * (w + 1)) / 2;
-        int y = z - t;
-        int x = w - y;
-        return new int[]{x, y};
+    private static String getSequence(Node solution) {
+        StringBuilder sequence = new StringBuilder();
+        Stack<Character> stack = new Stack<>();
+
+        while (solution.parent != null) {
+            if (solution.moves != null) {
+                for (int k = solution.moves.length() - 1; k >= 0; k--)
+                    stack.add(solution.moves.charAt(k));
+            } else {
+                stack.add(solution.dir);
+            }
+            solution = solution.parent;
+        }
+
+        while (!stack.isEmpty()) {
+            sequence.append(stack.pop());
+        }
+        return sequence.toString();
     }
-}
\ No newline at end of file
+}
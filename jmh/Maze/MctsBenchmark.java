@@ -0,0 +1,141 @@
+package Maze;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Monte Carlo tree search over the maze corpus: move generation and a rollout,
+ * a sequential solve, and the parallel modes at several thread counts. The parallel modes are
+ * measured both for wall time and for the quality of the path they return, as the number of steps
+ * still left from its end to the goal. Leaf-parallel search submits one batch of rollouts to its
+ * pool per iteration and waits for it, so its times include that hand-off
+ * {@code PARALLEL_ITERATIONS} times over; on short mazes it can dominate the rollouts.
+ */
+@Fork(1)
+public class MctsBenchmark {
+    private static final int ITERATIONS = 2000;
+    private static final int PARALLEL_ITERATIONS = 500;
+
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class Corpus {
+        @Param({"maze-1", "maze-2", "maze-3"})
+        public String maze;
+
+        char[][] board;
+        int[] start;
+        State initialState;
+        Node root;
+        SplittableRandom random;
+
+        @Setup
+        public void setUp() throws IOException {
+            List<char[][]> mazes = Main.loadMazes(Path.of("levels", "mazes.txt"));
+            board = mazes.get(Integer.parseInt(maze.substring(maze.indexOf('-') + 1)) - 1);
+            start = Main.findStart(board);
+            initialState = new State(start[0], start[1], board, new HashSet<>());
+            root = new Node(initialState, null);
+            random = new SplittableRandom(1);
+        }
+
+        State newInitialState() {
+            return new State(start[0], start[1], board, new HashSet<>());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public List<State> possibleMoves(Corpus state) {
+        return state.initialState.getPossibleMoves();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public double simulate(Corpus state) {
+        return state.root.simulate(state.random);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public List<Node> solve(Corpus state) {
+        return new MonteCarloTreeSearch().runMCTS(state.newInitialState(), ITERATIONS);
+    }
+
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class Parallel {
+        @Param({"root", "leaf"})
+        public String mode;
+
+        @Param({"1", "2", "4"})
+        public int threads;
+    }
+
+    /**
+     * The steps left to the goal from the end of each path, reported beside the time it took. JMH
+     * sums the counter over the measurement iterations, so the figure is the total for all of them.
+     */
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Quality {
+        public long stepsToGoal;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            stepsToGoal = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public List<Node> parallelSolve(Corpus corpus, Parallel state, Quality quality) throws InterruptedException {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch();
+        List<Node> path = state.mode.equals("root")
+                ? mcts.runRootParallel(corpus.newInitialState(), PARALLEL_ITERATIONS, state.threads)
+                : mcts.runLeafParallel(corpus.newInitialState(), PARALLEL_ITERATIONS, state.threads);
+        quality.stepsToGoal += stepsToGoal(corpus.board, corpus.start, path);
+        return path;
+    }
+
+    // Shortest walk from the end of the path to 'G', by breadth-first search over the maze.
+    private static int stepsToGoal(char[][] maze, int[] start, List<Node> path) {
+        State end = path.isEmpty() ? null : path.get(path.size() - 1).state;
+        int[] from = end == null ? start : new int[]{end.x, end.y};
+        int[][] distance = new int[maze.length][maze[0].length];
+        for (int[] row : distance) {
+            Arrays.fill(row, -1);
+        }
+        Deque<int[]> queue = new ArrayDeque<>();
+        distance[from[0]][from[1]] = 0;
+        queue.add(from);
+        int[] dx = {-1, 1, 0, 0};
+        int[] dy = {0, 0, -1, 1};
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            if (maze[cell[0]][cell[1]] == 'G') return distance[cell[0]][cell[1]];
+            for (int d = 0; d < 4; d++) {
+                int x = cell[0] + dx[d];
+                int y = cell[1] + dy[d];
+                if (x >= 0 && x < maze.length && y >= 0 && y < maze[0].length && maze[x][y] != 'X' && distance[x][y] < 0) {
+                    distance[x][y] = distance[cell[0]][cell[1]] + 1;
+                    queue.add(new int[]{x, y});
+                }
+            }
+        }
+        return -1;
+    }
+}
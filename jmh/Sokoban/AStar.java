@@ -0,0 +1,199 @@
+package Sokoban;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+/**
+ * The A* solver as the benchmarks see it. {@code SokobanSolver} and its {@code Node} live in the
+ * default package, which no named package can import, so they are reached through method
+ * handles. The handles are constants, so the JIT compiles the calls as if they were direct.
+ */
+final class AStar {
+    private static final MethodHandle NEW_SOLVER;
+    private static final MethodHandle A_STAR_LAZY;
+    private static final MethodHandle A_STAR_EAGER;
+    private static final MethodHandle SOLVE;
+    private static final MethodHandle NEW_NODE;
+    private static final MethodHandle CHILDREN;
+    private static final MethodHandle HASH_MAP_CHILDREN;
+    private static final MethodHandle BITBOARD_CHILDREN;
+    private static final MethodHandle HEURISTIC;
+    private static final MethodHandle HAS_DEADLOCK;
+    private static final MethodHandle PLAYER_ROW;
+    private static final MethodHandle PLAYER_COL;
+    private static final MethodHandle BOX_POSITIONS;
+
+    static {
+        try {
+            Class<?> solver = Class.forName("SokobanSolver");
+            Class<?> node = Class.forName("Node");
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(solver, MethodHandles.lookup());
+            MethodType objectToObject = MethodType.methodType(Object.class, Object.class);
+
+            NEW_SOLVER = lookup.findConstructor(solver, MethodType.methodType(void.class, Level.class))
+                    .asType(MethodType.methodType(Object.class, Level.class));
+            A_STAR_LAZY = lookup.findVirtual(solver, "a_star_lazy", MethodType.methodType(node)).asType(objectToObject);
+            A_STAR_EAGER = lookup.findVirtual(solver, "a_star_eager", MethodType.methodType(node)).asType(objectToObject);
+            SOLVE = lookup.findStatic(solver, "solve", MethodType.methodType(String.class, Level.class));
+            NEW_NODE = lookup.findConstructor(node, MethodType.methodType(void.class, Level.class, node, char.class,
+                    int.class, int.class, int.class, Map.class))
+                    .asType(MethodType.methodType(Object.class, Level.class, Object.class, char.class,
+                            int.class, int.class, int.class, HashMap.class));
+            CHILDREN = lookup.findVirtual(node, "children", MethodType.methodType(List.class))
+                    .asType(MethodType.methodType(List.class, Object.class));
+            HASH_MAP_CHILDREN = lookup.findVirtual(node, "hashMapChildren", MethodType.methodType(List.class))
+                    .asType(MethodType.methodType(List.class, Object.class));
+            BITBOARD_CHILDREN = lookup.findVirtual(node, "bitboardChildren", MethodType.methodType(List.class))
+                    .asType(MethodType.methodType(List.class, Object.class));
+            HEURISTIC = lookup.findVirtual(node, "heuristic", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            HAS_DEADLOCK = lookup.findVirtual(node, "hasDeadlock", MethodType.methodType(boolean.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+            PLAYER_ROW = lookup.findGetter(node, "i", int.class).asType(MethodType.methodType(int.class, Object.class));
+            PLAYER_COL = lookup.findGetter(node, "j", int.class).asType(MethodType.methodType(int.class, Object.class));
+            BOX_POSITIONS = lookup.findGetter(node, "boxPositions", Map.class)
+                    .asType(MethodType.methodType(Map.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private AStar() {
+    }
+
+    static Object solver(Level level) {
+        try {
+            return (Object) NEW_SOLVER.invokeExact(level);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object aStarLazy(Object solver) {
+        try {
+            return (Object) A_STAR_LAZY.invokeExact(solver);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object aStarEager(Object solver) {
+        try {
+            return (Object) A_STAR_EAGER.invokeExact(solver);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * {@code SokobanSolver.solve}: the verified moves of a solution, or null.
+     */
+    static String solve(Level level) {
+        try {
+            return (String) SOLVE.invokeExact(level);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static List<?> children(Object node) {
+        try {
+            return (List<?>) CHILDREN.invokeExact(node);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * {@code Node.children()} on the HashMap board, whatever {@code sokoban.board} selects.
+     */
+    static List<?> hashMapChildren(Object node) {
+        try {
+            return (List<?>) HASH_MAP_CHILDREN.invokeExact(node);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * {@code Node.children()} on bitboards, whatever {@code sokoban.board} selects.
+     */
+    static List<?> bitboardChildren(Object node) {
+        try {
+            return (List<?>) BITBOARD_CHILDREN.invokeExact(node);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int heuristic(Object node) {
+        try {
+            return (int) HEURISTIC.invokeExact(node);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean hasDeadlock(Object node) {
+        try {
+            return (boolean) HAS_DEADLOCK.invokeExact(node);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * The position of a node as a bitboard state.
+     */
+    static BitboardState toBitboard(Object node, Level level, Bitboard board) {
+        try {
+            int i = (int) PLAYER_ROW.invokeExact(node);
+            int j = (int) PLAYER_COL.invokeExact(node);
+            Map<?, ?> boxPositions = (Map<?, ?>) BOX_POSITIONS.invokeExact(node);
+            List<Integer> boxes = new ArrayList<>();
+            for (Object box : boxPositions.values()) {
+                int[] position = (int[]) box;
+                boxes.add(level.cell(position[0], position[1]));
+            }
+            return BitboardState.of(board, level.cell(i, j), boxes);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * The first {@code size} nodes of a breadth-first walk from the start, so the micro-benchmarks
+     * see a spread of positions rather than the start node over and over.
+     */
+    static List<Object> sample(Level level, int size) {
+        int[] sokoban = level.sokoban();
+        Object start;
+        try {
+            start = (Object) NEW_NODE.invokeExact(level, (Object) null, '\0', sokoban[0], sokoban[1], 0,
+                    level.initBoxPositions());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        List<Object> sample = new ArrayList<>();
+        Set<Object> seen = new HashSet<>();
+        Deque<Object> queue = new ArrayDeque<>();
+        queue.add(start);
+        seen.add(start);
+        while (!queue.isEmpty() && sample.size() < size) {
+            Object node = queue.poll();
+            sample.add(node);
+            for (Object child : children(node)) {
+                if (seen.add(child)) queue.add(child);
+            }
+        }
+        return sample;
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        throw new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,38 @@
+package Sokoban;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to solve each level of the corpus, and the level bundled with the solvers, with A*
+ * expanding nodes eagerly through {@code Node.children()} or lazily through its successor
+ * generator. Run with {@code -prof gc} for the memory allocated per solve.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AStarSolveBenchmark {
+    @Param({"small-1", "small-2", "small-3", "small-4", "medium-1", "medium-2", "medium-3", "medium-4", "bundled"})
+    public String level;
+
+    @Param({"lazy", "eager"})
+    public String expansion;
+
+    private Level board;
+
+    @Setup
+    public void setUp() throws IOException {
+        board = Corpus.level(level);
+    }
+
+    @Benchmark
+    public Object solve() {
+        Object solver = AStar.solver(board);
+        return expansion.equals("lazy") ? AStar.aStarLazy(solver) : AStar.aStarEager(solver);
+    }
+}
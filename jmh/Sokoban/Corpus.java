@@ -0,0 +1,22 @@
+package Sokoban;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The levels the benchmarks run on, by name: "small-k" and "medium-k" are the k-th level of
+ * {@code levels/small.txt} and {@code levels/medium.txt}, and "bundled" is the board the solvers
+ * ship with.
+ */
+final class Corpus {
+    private Corpus() {
+    }
+
+    static Level level(String name) throws IOException {
+        if (name.equals("bundled")) return new Level(Main.board);
+        int dash = name.lastIndexOf('-');
+        List<Level> levels = Level.load(Path.of("levels", name.substring(0, dash) + ".txt"));
+        return levels.get(Integer.parseInt(name.substring(dash + 1)) - 1);
+    }
+}
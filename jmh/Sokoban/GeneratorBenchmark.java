@@ -0,0 +1,55 @@
+package Sokoban;
+
+import Maze.MazeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to generate corpora of levels and mazes, from small boards up to mazes of millions of
+ * cells. Each level measurement generates a whole corpus in parallel.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeneratorBenchmark {
+    private static final int LEVELS = 64;
+
+    @State(Scope.Thread)
+    public static class Levels {
+        // rows x cols x boxes
+        @Param({"10x10x3", "20x20x8", "40x40x20"})
+        public String size;
+
+        LevelGenerator generator;
+
+        @Setup
+        public void setUp() {
+            String[] parts = size.split("x");
+            generator = new LevelGenerator(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        }
+    }
+
+    @Benchmark
+    public List<Level> levels(Levels state) {
+        return state.generator.generate(1, LEVELS);
+    }
+
+    @State(Scope.Thread)
+    public static class Mazes {
+        // Rooms on each side.
+        @Param({"100", "300", "1000"})
+        public int rooms;
+
+        @Param({"0", "0.1"})
+        public double loops;
+    }
+
+    @Benchmark
+    public char[][] maze(Mazes state) {
+        return MazeGenerator.generate(state.rooms, state.rooms, state.loops, 1);
+    }
+}
@@ -0,0 +1,234 @@
+package Sokoban;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the genetic solvers and the fallback {@link AStarSolver}: the cost of scoring a
+ * population one genome at a time, in lockstep and on bitboards, a bare move replay on the HashMap
+ * board and on bitboards, and the time and generations it takes to solve a level with the move-level and the
+ * push-level encodings. Evolution runs a fixed generation budget, so a level it cannot solve still
+ * finishes and counts as the whole budget.
+ */
+@Fork(1)
+public class GeneticBenchmark {
+    private static final int POPULATION_SIZE = 200;
+    private static final int GENERATIONS = 100;
+    private static final int DNA_LENGTH = 40;
+
+    @State(Scope.Thread)
+    public static class Fitness {
+        @Param({"small-1", "small-2", "small-3", "small-4"})
+        public String level;
+
+        @Param({"scalar", "lockstep", "bitboard"})
+        public String path;
+
+        Population population;
+        char[][] dna;
+
+        @Setup
+        public void setUp() throws IOException {
+            population = new Population(Corpus.level(level), POPULATION_SIZE, 0.1, DNA_LENGTH);
+            dna = new char[POPULATION_SIZE][];
+            for (int k = 0; k < POPULATION_SIZE; k++) {
+                dna[k] = population.population[k].dna.clone();
+            }
+        }
+
+        // Evaluation marks invalid moves in the DNA, so every call starts again from a copy.
+        void restore() {
+            for (int k = 0; k < POPULATION_SIZE; k++) {
+                System.arraycopy(dna[k], 0, population.population[k].dna, 0, dna[k].length);
+            }
+            population.bestElement = null;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Population evaluateFitness(Fitness state) {
+        state.restore();
+        if (state.path.equals("lockstep"))
+            state.population.evaluate_fitness_lockstep();
+        else if (state.path.equals("bitboard"))
+            state.population.evaluate_fitness_bitboard();
+        else
+            state.population.evaluate_fitness_scalar();
+        return state.population;
+    }
+
+    @State(Scope.Thread)
+    public static class Replay {
+        @Param({"small-1", "small-2", "small-3", "small-4"})
+        public String level;
+
+        @Param({"hashmap", "bitboard"})
+        public String board;
+
+        Level layout;
+        char[][] dna;
+        int next;
+
+        @Setup
+        public void setUp() throws IOException {
+            layout = Corpus.level(level);
+            dna = new char[POPULATION_SIZE][];
+            for (int k = 0; k < POPULATION_SIZE; k++) {
+                dna[k] = Element.getRandom(DNA_LENGTH).dna;
+            }
+        }
+
+        char[] next() {
+            char[] genome = dna[next];
+            next = next + 1 == dna.length ? 0 : next + 1;
+            return genome;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int replay(Replay state) {
+        char[] genome = state.next();
+        return state.board.equals("bitboard") ? replayBitboard(state.layout, genome) : replayHashMap(state.layout, genome);
+    }
+
+    // Plays the moves from the start until the first invalid one, as the genetic solver does, and
+    // returns how many boxes end on goals.
+    private static int replayHashMap(Level level, char[] dna) {
+        int[] player = level.sokoban();
+        HashMap<Integer, int[]> boxes = level.initBoxPositions();
+        for (char move : dna) {
+            int d = "UDLR".indexOf(move);
+            if (d == -1) continue;
+            int ni = player[0] + Level.DIRECTIONS[d][0];
+            int nj = player[1] + Level.DIRECTIONS[d][1];
+            if (level.isWall(ni, nj)) break;
+            if (boxes.containsKey(Level.cantorPair(ni, nj))) {
+                int bi = ni + Level.DIRECTIONS[d][0];
+                int bj = nj + Level.DIRECTIONS[d][1];
+                if (level.isWall(bi, bj) || boxes.containsKey(Level.cantorPair(bi, bj))) break;
+                boxes.remove(Level.cantorPair(ni, nj));
+                boxes.put(Level.cantorPair(bi, bj), new int[]{bi, bj});
+            }
+            player = new int[]{ni, nj};
+        }
+        int placed = 0;
+        for (int[] box : boxes.values()) {
+            if (level.isGoal(box[0], box[1])) placed++;
+        }
+        return placed;
+    }
+
+    // The same replay on bitboards.
+    private static int replayBitboard(Level level, char[] dna) {
+        BitboardState state = BitboardState.initial(level, level.bitboard());
+        for (char move : dna) {
+            int d = "UDLR".indexOf(move);
+            if (d == -1) continue;
+            if (!state.move(d)) break;
+        }
+        return state.placedBoxes();
+    }
+
+    @State(Scope.Thread)
+    public static class Evolution {
+        @Param({"small-1", "small-2", "small-3", "small-4", "bundled"})
+        public String level;
+
+        @Param({"move", "push-onePoint", "push-uniform"})
+        public String encoding;
+
+        Level board;
+
+        @Setup
+        public void setUp() throws IOException {
+            board = Corpus.level(level);
+        }
+    }
+
+    /**
+     * The generations each solve took, reported beside its time. JMH sums the counter over the
+     * measurement iterations, so the figure is the total for all of them.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Generations {
+        public long generations;
+
+        @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+        public void reset() {
+            generations = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public int solve(Evolution state, Generations generations) {
+        int taken = evolve(state.board, state.encoding);
+        generations.generations += taken;
+        return taken;
+    }
+
+    @State(Scope.Thread)
+    public static class Fallback {
+        @Param({"small-1", "small-2", "small-3", "small-4"})
+        public String level;
+
+        Level board;
+
+        @Setup
+        public void setUp() throws IOException {
+            board = Corpus.level(level);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public String fallbackSolve(Fallback state) {
+        return new AStarSolver(state.board).solve(state.board.sokoban(), state.board.initBoxPositions());
+    }
+
+    // The number of generations it took to solve the level, or GENERATIONS if it was not solved.
+    private static int evolve(Level level, String encoding) {
+        if (encoding.equals("move")) {
+            Population population = new Population(level, POPULATION_SIZE, 0.1, DNA_LENGTH);
+            for (int i = 0; i < GENERATIONS; i++) {
+                population.evaluate_fitness();
+                if (population.getHighestElement().fitness == Double.MAX_VALUE) {
+                    return i + 1;
+                }
+                population.reproduction();
+            }
+            return GENERATIONS;
+        }
+
+        PushPopulation.Crossover crossover = encoding.equals("push-uniform")
+                ? PushPopulation.Crossover.UNIFORM : PushPopulation.Crossover.ONE_POINT;
+        int pushes = 4 * level.boxCount() + 8;
+        PushPopulation population = new PushPopulation(level, POPULATION_SIZE, 0.05, 0.7, pushes, crossover);
+        for (int i = 0; i < GENERATIONS; i++) {
+            population.evaluate_fitness();
+            if (population.getHighestElement().fitness == Double.MAX_VALUE) {
+                return i + 1;
+            }
+            population.reproduction();
+        }
+        return GENERATIONS;
+    }
+}
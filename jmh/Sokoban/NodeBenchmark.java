@@ -0,0 +1,89 @@
+package Sokoban;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-costs of the A* search on a sample of reachable positions per level: successor
+ * generation, the heuristic, the deadlock check and state hashing on the solver's HashMap nodes,
+ * node successors found on bitboards, and successors, pushes and hashing on the same positions
+ * as bitboard states. The bitboard word loops run on the Vector API unless the benchmark is run
+ * with {@code -Dsokoban.bitboard.vector=false}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeBenchmark {
+    private static final int SAMPLE_SIZE = 256;
+
+    @Param({"small-1", "small-2", "small-3", "small-4", "medium-1", "medium-2", "medium-3", "medium-4"})
+    public String level;
+
+    private Object[] nodes;
+    private BitboardState[] states;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Level board = Corpus.level(level);
+        List<Object> sample = AStar.sample(board, SAMPLE_SIZE);
+        Bitboard bitboard = board.bitboard();
+        nodes = sample.toArray();
+        states = new BitboardState[nodes.length];
+        for (int k = 0; k < nodes.length; k++) {
+            states[k] = AStar.toBitboard(nodes[k], board, bitboard);
+        }
+    }
+
+    private int next() {
+        int k = next;
+        next = k + 1 == nodes.length ? 0 : k + 1;
+        return k;
+    }
+
+    @Benchmark
+    public List<?> nodeChildren() {
+        return AStar.hashMapChildren(nodes[next()]);
+    }
+
+    @Benchmark
+    public List<?> nodeBitboardChildren() {
+        return AStar.bitboardChildren(nodes[next()]);
+    }
+
+    @Benchmark
+    public int nodeHeuristic() {
+        return AStar.heuristic(nodes[next()]);
+    }
+
+    @Benchmark
+    public boolean nodeDeadlock() {
+        return AStar.hasDeadlock(nodes[next()]);
+    }
+
+    @Benchmark
+    public int nodeHash() {
+        return nodes[next()].hashCode();
+    }
+
+    @Benchmark
+    public List<BitboardState> bitboardChildren() {
+        return states[next()].children();
+    }
+
+    @Benchmark
+    public List<BitboardState> bitboardPushes() {
+        return states[next()].pushes();
+    }
+
+    @Benchmark
+    public int bitboardHash() {
+        return states[next()].hashCode();
+    }
+}
@@ -0,0 +1,83 @@
+package Sokoban;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaying solutions with the {@link SolutionVerifier}: one at a time on a reused board, and as a
+ * parallel batch over the solutions to the whole corpus.
+ */
+@Fork(1)
+public class VerifierBenchmark {
+    private static final String[] LEVELS = {"small-1", "small-2", "small-3", "small-4",
+            "medium-1", "medium-2", "medium-3", "medium-4"};
+    private static final int BATCH = 10_000;
+
+    @State(Scope.Thread)
+    public static class Single {
+        @Param({"small-1", "small-2", "small-3", "small-4", "medium-1", "medium-2", "medium-3", "medium-4"})
+        public String level;
+
+        SolutionVerifier verifier;
+        SolutionVerifier.Replay replay;
+        String moves;
+
+        @Setup
+        public void setUp() throws IOException {
+            Level board = Corpus.level(level);
+            moves = AStar.solve(board);
+            if (moves == null) throw new IllegalStateException("No solution to " + level);
+            verifier = new SolutionVerifier(board);
+            replay = verifier.newReplay();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public boolean verify(Single state) {
+        return state.verifier.verify(state.moves, state.replay);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+        List<Level> levels;
+        List<String> solutions;
+        int threads;
+
+        @Setup
+        public void setUp() throws IOException {
+            List<Level> solved = new ArrayList<>();
+            List<String> moves = new ArrayList<>();
+            for (String name : LEVELS) {
+                Level level = Corpus.level(name);
+                String solution = AStar.solve(level);
+                if (solution == null) continue;
+                solved.add(level);
+                moves.add(solution);
+            }
+            levels = new ArrayList<>(BATCH);
+            solutions = new ArrayList<>(BATCH);
+            for (int k = 0; k < BATCH; k++) {
+                levels.add(solved.get(k % solved.size()));
+                solutions.add(moves.get(k % moves.size()));
+            }
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public SolutionVerifier.Result[] verifyAll(Batch state) throws InterruptedException {
+        return SolutionVerifier.verifyAll(state.levels, state.solutions, state.threads);
+    }
+}
@@ -0,0 +1,91 @@
+package Maze;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MazeGeneratorTest {
+    // Open cells reachable from P, by breadth-first search.
+    private static boolean[][] reachable(char[][] maze) {
+        int[] start = Main.findStart(maze);
+        boolean[][] seen = new boolean[maze.length][maze[0].length];
+        Deque<int[]> queue = new ArrayDeque<>();
+        seen[start[0]][start[1]] = true;
+        queue.add(start);
+        int[][] steps = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            for (int[] step : steps) {
+                int i = cell[0] + step[0];
+                int j = cell[1] + step[1];
+                if (maze[i][j] != 'X' && !seen[i][j]) {
+                    seen[i][j] = true;
+                    queue.add(new int[]{i, j});
+                }
+            }
+        }
+        return seen;
+    }
+
+    // A spanning tree of the rooms: one carved wall fewer than there are rooms, and no room cut off.
+    @Test
+    void perfectMazeIsSpanningTree() {
+        int height = 12;
+        int width = 17;
+        char[][] maze = MazeGenerator.generate(height, width, 0, 4);
+        assertEquals(2 * height + 1, maze.length);
+        assertEquals(2 * width + 1, maze[0].length);
+
+        int carved = 0;
+        for (int i = 1; i < maze.length - 1; i++) {
+            for (int j = 1 + (i & 1); j < maze[i].length - 1; j += 2) {
+                if (maze[i][j] != 'X') carved++;
+            }
+        }
+        assertEquals(height * width - 1, carved);
+
+        boolean[][] seen = reachable(maze);
+        for (int i = 1; i < maze.length; i += 2) {
+            for (int j = 1; j < maze[i].length; j += 2) {
+                assertTrue(seen[i][j], "room " + i + "," + j);
+            }
+        }
+    }
+
+    @Test
+    void goalIsReachableFromStart() {
+        for (double loops : new double[]{0, 0.1, 0.5}) {
+            for (long seed = 1; seed <= 10; seed++) {
+                char[][] maze = MazeGenerator.generate(9, 13, loops, seed);
+                boolean[][] seen = reachable(maze);
+                int goals = 0;
+                for (int i = 0; i < maze.length; i++) {
+                    for (int j = 0; j < maze[i].length; j++) {
+                        if (maze[i][j] == 'G') {
+                            goals++;
+                            assertTrue(seen[i][j], "loops " + loops + ", seed " + seed);
+                        }
+                    }
+                }
+                assertEquals(1, goals);
+            }
+        }
+    }
+
+    // The corpus is the same whatever the number of threads, since maze k comes from seed + k.
+    @Test
+    void sameSeedGivesSameMaze() {
+        assertTrue(Arrays.deepEquals(MazeGenerator.generate(10, 10, 0.2, 7), MazeGenerator.generate(10, 10, 0.2, 7)));
+        assertFalse(Arrays.deepEquals(MazeGenerator.generate(10, 10, 0.2, 7), MazeGenerator.generate(10, 10, 0.2, 8)));
+
+        List<char[][]> corpus = MazeGenerator.generate(10, 10, 0.2, 7, 4);
+        for (int k = 0; k < corpus.size(); k++) {
+            assertTrue(Arrays.deepEquals(MazeGenerator.generate(10, 10, 0.2, 7 + k), corpus.get(k)), "maze " + k);
+        }
+    }
+}
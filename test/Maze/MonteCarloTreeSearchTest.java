@@ -0,0 +1,114 @@
+package Maze;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloTreeSearchTest {
+    private static State start(String... rows) {
+        char[][] maze = new char[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            maze[i] = rows[i].toCharArray();
+        }
+        int[] start = Main.findStart(maze);
+        return new State(start[0], start[1], maze, new HashSet<>());
+    }
+
+    private static long iterations(MonteCarloTreeSearch mcts) {
+        return mcts.metrics.counter("iterations").sum();
+    }
+
+    // A deadline past Long.MAX_VALUE wraps to a negative nanoTime, and is still in the future.
+    @Test
+    void deadlineThatOverflowsStillSearches() {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(new SplittableRandom(1));
+        mcts.runUntil(start("XXXXXX", "XP..GX", "XXXXXX"), System.nanoTime() + Long.MAX_VALUE, 300,
+                Integer.MAX_VALUE, path -> { });
+        assertEquals(300, iterations(mcts));
+    }
+
+    // The best path never reaches a walled-off goal, so it never settles however often it repeats.
+    @Test
+    void pathShortOfGoalIsNeverStable() {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(new SplittableRandom(1));
+        List<Node> path = mcts.runUntil(start("XXXXXXX", "XP..XGX", "XXXXXXX"), System.nanoTime() + 60_000_000_000L,
+                2000, 1, best -> { });
+        assertEquals(2000, iterations(mcts));
+        assertFalse(path.get(path.size() - 1).state.isGoal());
+    }
+
+    @Test
+    void pathToGoalStopsOnceStable() {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(new SplittableRandom(1));
+        List<Node> path = mcts.runUntil(start("XXXXXX", "XP..GX", "XXXXXX"), System.nanoTime() + 60_000_000_000L,
+                100_000, 2, best -> { });
+        assertTrue(path.get(path.size() - 1).state.isGoal());
+        assertTrue(iterations(mcts) < 100_000);
+    }
+
+    @Test
+    void rootParallelReachesGoal() throws InterruptedException {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(new SplittableRandom(1));
+        List<Node> path = mcts.runRootParallel(start("XXXXXX", "XP..GX", "XXXXXX"), 300, 3);
+        assertTrue(path.get(path.size() - 1).state.isGoal());
+        assertEquals(900, iterations(mcts));
+    }
+
+    @Test
+    void leafParallelReachesGoal() throws InterruptedException {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(new SplittableRandom(1));
+        List<Node> path = mcts.runLeafParallel(start("XXXXXX", "XP..GX", "XXXXXX"), 300, 3);
+        assertTrue(path.get(path.size() - 1).state.isGoal());
+        assertEquals(900, mcts.metrics.counter("rollouts").sum());
+    }
+
+    // Left leads in the first tree and right in the second, but right has more visits in total,
+    // and the second tree visited it most.
+    @Test
+    void mergedRootsPickMostVisitedChild() {
+        State initial = start("XXXXXXX", "X.P..GX", "XXXXXXX");
+        Node first = new Node(initial, null);
+        Node second = new Node(initial, null);
+        first.expand();
+        second.expand();
+        assertEquals(2, first.children.size());
+        setVisits(first, "1,1", 5);
+        setVisits(first, "1,3", 3);
+        setVisits(second, "1,1", 1);
+        setVisits(second, "1,3", 6);
+
+        List<Node> path = MonteCarloTreeSearch.mergeRoots(List.of(first, second));
+        assertEquals(1, path.size());
+        assertSame(second.children.stream().filter(c -> c.visits == 6).findFirst().orElseThrow(), path.get(0));
+    }
+
+    private static void setVisits(Node root, String state, int visits) {
+        for (Node child : root.children) {
+            if (child.state.getStateString().equals(state)) child.visits = visits;
+        }
+    }
+
+    // A later start on the same maze carries on in the kept tree; another maze starts over.
+    @Test
+    void reusesTreeForLaterStartOnSameMaze() {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(new SplittableRandom(1));
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        mcts.runUntil(start("XXXXXXXX", "XP....GX", "XXXXXXXX"), deadline, 300, Integer.MAX_VALUE, best -> { });
+        assertEquals(0, reusedNodes(mcts));
+
+        mcts.runUntil(start("XXXXXXXX", "X..P..GX", "XXXXXXXX"), deadline, 300, Integer.MAX_VALUE, best -> { });
+        long reused = reusedNodes(mcts);
+        assertTrue(reused > 0);
+
+        mcts.runUntil(start("XXXXXXXX", "X..P.XGX", "XXXXXXXX"), deadline, 300, Integer.MAX_VALUE, best -> { });
+        assertEquals(reused, reusedNodes(mcts));
+    }
+
+    private static long reusedNodes(MonteCarloTreeSearch mcts) {
+        return mcts.metrics.counter("reusedNodes").sum();
+    }
+}
@@ -0,0 +1,86 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitboardTest {
+    private static final BitboardOps SCALAR = new BitboardOps();
+
+    // The tests run with the vector module, so the vector loops are the ones in use.
+    @Test
+    void loadsVectorOpsWhenModulePresent() {
+        assertEquals("vector", Bitboard.ops());
+    }
+
+    @Test
+    void opsMatchScalarLoops() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int words = 1; words <= 20; words++) {
+            for (int round = 0; round < 20; round++) {
+                long[] a = randomWords(random, words);
+                long[] b = randomWords(random, words);
+                long[] expected = new long[words];
+                long[] actual = new long[words];
+
+                SCALAR.and(a, b, expected);
+                Bitboard.OPS.and(a, b, actual);
+                assertArrayEquals(expected, actual);
+                SCALAR.andNot(a, b, expected);
+                Bitboard.OPS.andNot(a, b, actual);
+                assertArrayEquals(expected, actual);
+                assertEquals(SCALAR.intersects(a, b), Bitboard.OPS.intersects(a, b));
+                assertEquals(SCALAR.subsetOf(a, b), Bitboard.OPS.subsetOf(a, b));
+                SCALAR.and(a, b, expected);
+                assertTrue(Bitboard.OPS.subsetOf(expected, a));
+
+                for (int n = 0; n < 64 * words + 2; n++) {
+                    SCALAR.shiftUp(a, n >>> 6, n & 63, expected);
+                    Bitboard.OPS.shiftUp(a, n >>> 6, n & 63, actual);
+                    assertArrayEquals(expected, actual, "up " + n);
+                    SCALAR.shiftDown(a, n >>> 6, n & 63, expected);
+                    Bitboard.OPS.shiftDown(a, n >>> 6, n & 63, actual);
+                    assertArrayEquals(expected, actual, "down " + n);
+                }
+
+                long[] passable = randomWords(random, words);
+                long[] reach = randomWords(random, words);
+                expected = reach.clone();
+                actual = reach.clone();
+                assertEquals(SCALAR.spread(expected, a, passable), Bitboard.OPS.spread(actual, a, passable));
+                assertArrayEquals(expected, actual);
+                assertFalse(Bitboard.OPS.spread(actual, a, passable));
+            }
+        }
+    }
+
+    // A push on bitboards finds the same positions as a scan of every box and direction.
+    @Test
+    void pushesMatchCellByCellScan() {
+        Level level = new LevelGenerator(20, 20, 6).generate(3);
+        BitboardState state = BitboardState.initial(level, level.bitboard());
+        long[] reach = state.reachable();
+
+        int expected = 0;
+        for (int box = 0; box < level.rows() * level.cols(); box++) {
+            if (!state.hasBox(box)) continue;
+            for (int d = 0; d < 4; d++) {
+                int behind = level.neighbour(box, d ^ 1);
+                int beyond = level.neighbour(box, d);
+                if (behind != -1 && beyond != -1 && Bitboard.get(reach, behind) && !state.hasBox(beyond)
+                        && !level.isDeadSquare(beyond))
+                    expected++;
+            }
+        }
+        assertEquals(expected, state.pushes().size());
+    }
+
+    private static long[] randomWords(SplittableRandom random, int words) {
+        long[] board = new long[words];
+        Arrays.setAll(board, w -> random.nextLong() & random.nextLong());
+        return board;
+    }
+}
@@ -0,0 +1,46 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlockPatternsTest {
+    @Test
+    void findsPatternCoveredByBoxes() {
+        DeadlockPatterns patterns = new DeadlockPatterns();
+        assertTrue(patterns.add(new int[]{30, 10, 20}));
+        assertArrayEquals(new int[]{10, 20, 30}, patterns.find(new int[]{10, 20, 30}));
+        assertArrayEquals(new int[]{10, 20, 30}, patterns.find(new int[]{1, 10, 15, 20, 30, 44}));
+        assertNull(patterns.find(new int[]{10, 20, 31}));
+        assertNull(patterns.find(new int[]{20, 30}));
+        assertNull(patterns.find(new int[]{}));
+    }
+
+    @Test
+    void addsEachPatternOnce() {
+        DeadlockPatterns patterns = new DeadlockPatterns();
+        assertTrue(patterns.add(new int[]{5, 3}));
+        assertFalse(patterns.add(new int[]{3, 5}));
+        assertTrue(patterns.add(new int[]{3, 6}));
+        assertEquals(2, patterns.size());
+        assertArrayEquals(new int[]{3, 6}, patterns.find(new int[]{3, 6}));
+    }
+
+    // Patterns read back from the store are known but never saved again.
+    @Test
+    void drainsOnlyAddedPatterns() {
+        DeadlockPatterns patterns = new DeadlockPatterns();
+        assertNotNull(patterns.insert(new int[]{7, 8}));
+        assertNull(patterns.insert(new int[]{8, 7}));
+        patterns.add(new int[]{2, 1});
+        patterns.add(new int[]{8, 7});
+
+        List<int[]> unsaved = patterns.drainUnsaved();
+        assertEquals(1, unsaved.size());
+        assertArrayEquals(new int[]{1, 2}, unsaved.get(0));
+        assertTrue(patterns.drainUnsaved().isEmpty());
+        assertEquals(2, patterns.size());
+    }
+}
@@ -0,0 +1,31 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalSearchTest {
+    // A buffer of a few states spills every layer into many runs, all merged side by side.
+    @Test
+    void solvesWithManyRuns(@TempDir Path dir) throws Exception {
+        ExternalSearch.Result result = new ExternalSearch(new LevelGenerator(8, 8, 2).generate(17), dir, 4).run();
+        assertEquals(4, result.solvedDepth);
+    }
+
+    @Test
+    void rejectsBoardTooLargeToPack(@TempDir Path dir) {
+        char[][] board = new char[3][30_000];
+        for (char[] row : board) {
+            Arrays.fill(row, 'X');
+        }
+        board[1][1] = 'S';
+        board[1][2] = '#';
+        board[1][3] = 'E';
+        Level level = new Level(board);
+        assertThrows(IllegalArgumentException.class, () -> new ExternalSearch(level, dir, 16));
+    }
+}
@@ -0,0 +1,29 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LevelGeneratorTest {
+    // The pulls played back as pushes solve every level, on small and crowded boards alike.
+    @Test
+    void recordedSolutionSolvesLevel() {
+        LevelGenerator[] generators = {new LevelGenerator(8, 8, 2), new LevelGenerator(10, 10, 3),
+                new LevelGenerator(12, 12, 6, 0.1, 60)};
+        for (LevelGenerator generator : generators) {
+            for (long seed = 1; seed <= 100; seed++) {
+                LevelGenerator.Generated generated = generator.generateSolved(seed);
+                SolutionVerifier.Result result = new SolutionVerifier(generated.level).verify(generated.solution);
+                assertTrue(result.isValid(), "seed " + seed + ": " + result);
+            }
+        }
+    }
+
+    @Test
+    void solvedLevelIsTheGeneratedOne() {
+        LevelGenerator generator = new LevelGenerator(10, 10, 3);
+        for (long seed = 1; seed <= 10; seed++) {
+            assertEquals(generator.generate(seed).toXsb(), generator.generateSolved(seed).level.toXsb());
+        }
+    }
+}
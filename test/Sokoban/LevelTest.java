@@ -0,0 +1,36 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LevelTest {
+    // Solves on other threads read the same level, so nothing handed out may write back into it.
+    @Test
+    void positionsAreCopiesArraysIncluded() {
+        Level level = new LevelGenerator(8, 8, 2).generate(3);
+        String before = String.join("\n", level.toXsb());
+
+        for (Map.Entry<Integer, int[]> box : level.initBoxPositions().entrySet()) {
+            box.getValue()[0] = 0;
+            box.getValue()[1] = 0;
+        }
+        for (int[] goal : level.goalPositions().values()) {
+            goal[0] = 0;
+        }
+        level.initBoxPositions().clear();
+
+        assertEquals(before, String.join("\n", level.toXsb()));
+        for (Map.Entry<Integer, int[]> box : level.initBoxPositions().entrySet()) {
+            int[] position = box.getValue();
+            assertEquals(box.getKey(), Level.cantorPair(position[0], position[1]));
+        }
+        for (Map.Entry<Integer, int[]> goal : level.goalPositions().entrySet()) {
+            assertEquals(goal.getKey(), Level.cantorPair(goal.getValue()[0], goal.getValue()[1]));
+        }
+        assertEquals(2, level.boxCount());
+        assertEquals(2, level.goalCount());
+    }
+}
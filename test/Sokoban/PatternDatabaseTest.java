@@ -0,0 +1,57 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatternDatabaseTest {
+    // A corridor 300 cells long with its goals at the far end: a pair that starts at the other end
+    // takes far more pushes than a byte holds, and still must not read as unsolvable.
+    @Test
+    void saturatesPairsBeyondByteRange(@TempDir Path dir) throws Exception {
+        int length = 300;
+        char[][] board = new char[3][length + 2];
+        for (char[] row : board) {
+            Arrays.fill(row, 'X');
+        }
+        Arrays.fill(board[1], 1, length + 1, '.');
+        board[1][1] = 'S';
+        board[1][2] = '#';
+        board[1][4] = '#';
+        board[1][length - 1] = 'E';
+        board[1][length] = 'E';
+
+        Level level = new Level(board);
+        PatternDatabase database = PatternDatabase.open(level, dir, 2);
+        assertEquals(PatternDatabase.SATURATED, database.distance(level.cell(1, 2), level.cell(1, 4)));
+        assertEquals(PatternDatabase.SATURATED, database.distance(level.cell(1, 4), level.cell(1, 2)));
+        assertEquals(3, database.distance(level.cell(1, length - 3), level.cell(1, length - 1)));
+        // Nothing can stand behind a box against the left wall to push it.
+        assertEquals(PatternDatabase.UNSOLVABLE, database.distance(level.cell(1, 1), level.cell(1, 3)));
+    }
+
+    // An open room with more floor cells than a table indexed by int can pair up.
+    @Test
+    void rejectsBoardTooLargeToIndex(@TempDir Path dir) throws Exception {
+        int side = 220;
+        char[][] board = new char[side][side];
+        for (int i = 0; i < side; i++) {
+            Arrays.fill(board[i], '.');
+            board[i][0] = board[i][side - 1] = 'X';
+        }
+        Arrays.fill(board[0], 'X');
+        Arrays.fill(board[side - 1], 'X');
+        board[1][1] = 'S';
+        board[2][2] = '#';
+        board[3][3] = 'E';
+
+        Level level = new Level(board);
+        assertThrows(IllegalArgumentException.class, () -> PatternDatabase.build(level, dir, 1));
+        assertFalse(Files.exists(PatternDatabase.file(level, dir)));
+    }
+}
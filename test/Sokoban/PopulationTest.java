@@ -0,0 +1,70 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopulationTest {
+    // The bitboard and lockstep simulations score every genome alike, invalid moves included.
+    @Test
+    void bitboardFitnessMatchesLockstep() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Level level = new LevelGenerator(10, 10, 3).generate(seed);
+            Population population = new Population(level, 200, 0.1, 40);
+            char[][] dna = new char[population.population.length][];
+            for (int k = 0; k < dna.length; k++) {
+                dna[k] = population.population[k].dna.clone();
+            }
+
+            population.evaluate_fitness_lockstep();
+            double[] lockstep = new double[dna.length];
+            char[][] marked = new char[dna.length][];
+            for (int k = 0; k < dna.length; k++) {
+                lockstep[k] = population.population[k].fitness;
+                marked[k] = population.population[k].dna.clone();
+                population.population[k].dna = dna[k].clone();
+                population.population[k].fitness = 0;
+            }
+
+            population.bestElement = null;
+            population.evaluate_fitness_bitboard();
+            for (int k = 0; k < dna.length; k++) {
+                assertEquals(lockstep[k], population.population[k].fitness, 1e-9, "genome " + k);
+                assertArrayEquals(marked[k], population.population[k].dna, "genome " + k);
+            }
+        }
+    }
+
+    @Test
+    void lockstepKernelIsScalarByDefault() {
+        assertEquals("scalar", new Population(new LevelGenerator(8, 8, 2).generate(1), 10, 0.1, 10).kernel.name());
+    }
+
+    // The vector kernel, which the tests run with the module for, scores as the HashMap path one
+    // genome at a time.
+    @Test
+    void vectorKernelMatchesScalarLoop() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Level level = new LevelGenerator(12, 12, 4).generate(seed);
+            Population vector;
+            System.setProperty("sokoban.ga.vector", "true");
+            try {
+                vector = new Population(level, 150, 0.1, 60);
+            } finally {
+                System.clearProperty("sokoban.ga.vector");
+            }
+            assertEquals("vector", vector.kernel.name());
+            Population scalar = new Population(level, 150, 0.1, 60);
+            for (int k = 0; k < vector.population.length; k++) {
+                scalar.population[k].dna = vector.population[k].dna.clone();
+            }
+
+            vector.evaluate_fitness_lockstep();
+            scalar.evaluate_fitness_scalar();
+            for (int k = 0; k < vector.population.length; k++) {
+                assertEquals(scalar.population[k].fitness, vector.population[k].fitness, 1e-9, "genome " + k);
+                assertArrayEquals(scalar.population[k].dna, vector.population[k].dna, "genome " + k);
+            }
+        }
+    }
+}
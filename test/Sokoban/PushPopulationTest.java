@@ -0,0 +1,90 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PushPopulationTest {
+    // One box with the bottom wall under it: it can only be pushed left or right along the row,
+    // towards the goal on the right.
+    private static final Level ROOM = Level.parse(List.of(
+            "#######",
+            "#@    #",
+            "#  $ .#",
+            "#######"));
+
+    // Genes are box * 4 + direction, directions as Level.MOVES: U, D, L, R.
+    @Test
+    void repairsBlockedGeneToNextLegalPush() {
+        PushPopulation population = new PushPopulation(ROOM, 10, 0, 0, 4, PushPopulation.Crossover.ONE_POINT);
+        PushPopulation.Replay replay = population.new Replay();
+
+        assertEquals(2, replay.playable(0));
+        assertEquals(2, replay.playable(1));
+        assertEquals(2, replay.playable(2));
+        assertEquals(3, replay.playable(3));
+    }
+
+    @Test
+    void findsNoPushOnceBoxIsStuck() {
+        Level corridor = Level.parse(List.of(
+                "#####",
+                "#@$.#",
+                "#####"));
+        PushPopulation population = new PushPopulation(corridor, 10, 0, 0, 4, PushPopulation.Crossover.ONE_POINT);
+        PushPopulation.Replay replay = population.new Replay();
+
+        assertEquals(3, replay.playable(0));
+        replay.push(3);
+        for (int gene = 0; gene < 4; gene++) {
+            assertEquals(-1, replay.playable(gene));
+        }
+    }
+
+    // The player has to walk round the box before the first push, and the walk is in the moves.
+    @Test
+    void movesReplayAsValidSolution() {
+        PushPopulation population = new PushPopulation(ROOM, 10, 0, 0, 4, PushPopulation.Crossover.ONE_POINT);
+        population.population[0] = new PushElement(new int[]{3, 3, 0, 0});
+        population.evaluate_fitness();
+
+        PushElement solved = population.getHighestElement();
+        assertEquals(Double.MAX_VALUE, solved.fitness);
+        String moves = population.moves(solved);
+        SolutionVerifier.Result result = new SolutionVerifier(ROOM).verify(moves);
+        assertTrue(result.isValid(), moves + ": " + result);
+        assertEquals(2, result.pushes);
+    }
+
+    @Test
+    void crossoverKeepsGenomeLength() {
+        for (PushPopulation.Crossover crossover : PushPopulation.Crossover.values()) {
+            PushPopulation population = new PushPopulation(ROOM, 50, 0, 1, 12, crossover);
+            population.random = new Random(7);
+            int[][] before = new int[population.populationSize][];
+            for (int k = 0; k < before.length; k++) {
+                before[k] = population.population[k].genes;
+            }
+
+            for (int generation = 0; generation < 5; generation++) {
+                population.reproduction();
+                for (PushElement element : population.population) {
+                    assertEquals(12, element.genes.length, crossover.name());
+                }
+            }
+            // With no mutation, every gene still comes from some parent at the same position.
+            for (PushElement element : population.population) {
+                for (int g = 0; g < element.genes.length; g++) {
+                    boolean inherited = false;
+                    for (int[] genes : before) {
+                        inherited |= genes[g] == element.genes[g];
+                    }
+                    assertTrue(inherited, crossover.name());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolutionOptimizerTest {
+    private static void assertSolves(Level level, String solution) {
+        assertNotNull(solution);
+        SolutionVerifier.Result result = new SolutionVerifier(level).verify(solution);
+        assertTrue(result.isValid(), solution + ": " + result);
+    }
+
+    @Test
+    void neverLengthensOrBreaksSolution() {
+        LevelGenerator generator = new LevelGenerator(8, 8, 2);
+        for (long seed = 1; seed <= 20; seed++) {
+            LevelGenerator.Generated generated = generator.generateSolved(seed);
+            String optimized = SolutionOptimizer.optimize(generated.level, generated.solution);
+            assertSolves(generated.level, optimized);
+            assertTrue(optimized.length() <= generated.solution.length(), "seed " + seed);
+        }
+    }
+
+    // A step there and back, inserted where the player is free to take it, is cut out again.
+    @Test
+    void removesPaddedLoop() {
+        Level level = new LevelGenerator(8, 8, 2).generate(3);
+        String solution = new AStarSolver(level).solve(level.sokoban(), level.initBoxPositions());
+        assertSolves(level, solution);
+        int pushes = new SolutionVerifier(level).verify(solution).pushes;
+
+        String padded = null;
+        for (int k = 0; k <= solution.length() && padded == null; k++) {
+            for (String loop : new String[]{"LR", "RL", "UD", "DU"}) {
+                String candidate = solution.substring(0, k) + loop + solution.substring(k);
+                SolutionVerifier.Result result = new SolutionVerifier(level).verify(candidate);
+                if (result.isValid() && result.pushes == pushes) {
+                    padded = candidate;
+                    break;
+                }
+            }
+        }
+        assertNotNull(padded);
+
+        String optimized = SolutionOptimizer.optimize(level, padded);
+        assertSolves(level, optimized);
+        assertTrue(optimized.length() <= solution.length(), optimized + " is longer than " + solution);
+    }
+
+    // Unknown characters, steps into walls and blocked pushes are skipped, not fatal.
+    @Test
+    void toleratesIllegalMoves() {
+        LevelGenerator.Generated generated = new LevelGenerator(8, 8, 2).generateSolved(5);
+        Level level = generated.level;
+        assertNull(SolutionOptimizer.optimize(level, ""));
+        assertNull(SolutionOptimizer.optimize(level, "x? \n"));
+
+        SplittableRandom random = new SplittableRandom(5);
+        StringBuilder noisy = new StringBuilder();
+        for (char move : generated.solution.toCharArray()) {
+            if (random.nextInt(4) == 0) noisy.append(" X?".charAt(random.nextInt(3)));
+            noisy.append(move);
+        }
+        String optimized = SolutionOptimizer.optimize(level, noisy);
+        assertSolves(level, optimized);
+        assertTrue(optimized.length() <= generated.solution.length());
+
+        StringBuilder walk = new StringBuilder();
+        for (int k = 0; k < 200; k++) {
+            walk.append(Level.MOVES[random.nextInt(4)]);
+        }
+        String walked = SolutionOptimizer.optimize(level, walk);
+        if (walked != null) assertSolves(level, walked);
+    }
+}
@@ -0,0 +1,127 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolutionStoreTest {
+    @Test
+    void keepsShortestSolutionAcrossReopen(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("store.bin");
+        List<Level> levels = new LevelGenerator(8, 8, 2).generate(1, 20);
+        try (SolutionStore store = SolutionStore.open(file)) {
+            for (int k = 0; k < levels.size(); k++) {
+                store.addSolution(levels.get(k), "UUDD" + k);
+            }
+            store.addSolution(levels.get(3), "LR");
+            store.addSolution(levels.get(3), "LRLRLR");
+        }
+
+        try (SolutionStore store = SolutionStore.open(file)) {
+            for (int k = 0; k < levels.size(); k++) {
+                assertEquals(k == 3 ? "LR" : "UUDD" + k, store.solution(levels.get(k)), "level " + k);
+            }
+            assertNull(store.solution(new LevelGenerator(9, 9, 3).generate(1)));
+        }
+    }
+
+    @Test
+    void keepsDeadlockPatternsAcrossReopen(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("store.bin");
+        Level level = new LevelGenerator(10, 10, 3).generate(2);
+        try (SolutionStore store = SolutionStore.open(file)) {
+            DeadlockPatterns patterns = store.deadlockPatterns(level);
+            patterns.add(new int[]{40, 12});
+            store.save(level);
+            patterns.add(new int[]{13, 14, 23});
+            store.save(level);
+        }
+
+        try (SolutionStore store = SolutionStore.open(file)) {
+            DeadlockPatterns patterns = store.deadlockPatterns(level);
+            assertEquals(2, patterns.size());
+            assertArrayEquals(new int[]{12, 40}, patterns.find(new int[]{5, 12, 40}));
+            assertArrayEquals(new int[]{13, 14, 23}, patterns.find(new int[]{13, 14, 23}));
+            assertNull(patterns.find(new int[]{13, 23, 40}));
+        }
+    }
+
+    // A crash can leave half a record at the end; it is dropped and the store carries on after it.
+    @Test
+    void dropsTruncatedTailOnOpen(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("store.bin");
+        Level first = new LevelGenerator(8, 8, 2).generate(1);
+        Level second = new LevelGenerator(8, 8, 2).generate(2);
+        try (SolutionStore store = SolutionStore.open(file)) {
+            store.addSolution(first, "UDLR");
+        }
+        long complete = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            ByteBuffer partial = ByteBuffer.allocate(13 + 4);
+            partial.put((byte) 1).putLong(second.levelHash()).putInt(100).put("LLRR".getBytes(StandardCharsets.US_ASCII));
+            partial.flip();
+            channel.write(partial);
+        }
+
+        try (SolutionStore store = SolutionStore.open(file)) {
+            assertEquals(complete, Files.size(file));
+            assertEquals("UDLR", store.solution(first));
+            assertNull(store.solution(second));
+            store.addSolution(second, "RRLL");
+        }
+        try (SolutionStore store = SolutionStore.open(file)) {
+            assertEquals("UDLR", store.solution(first));
+            assertEquals("RRLL", store.solution(second));
+        }
+    }
+
+    @Test
+    void rejectsFileThatIsNotAStore(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("other.bin");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> SolutionStore.open(file));
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndFewFalsePositives() {
+        SolutionStore.BloomFilter filter = new SolutionStore.BloomFilter(1000);
+        for (long key = 0; key < 1000; key++) {
+            filter.add((byte) 1, key * 7919);
+        }
+        for (long key = 0; key < 1000; key++) {
+            assertTrue(filter.mightContain((byte) 1, key * 7919));
+        }
+        int falsePositives = 0;
+        for (long key = 0; key < 10_000; key++) {
+            if (filter.mightContain((byte) 1, key * 7919 + 1)) falsePositives++;
+        }
+        assertTrue(falsePositives < 300, falsePositives + " false positives in 10000");
+    }
+
+    // Gaps on either side of each varint length boundary, up to the largest int.
+    @Test
+    void varintPatternsRoundTrip() {
+        List<int[]> patterns = new ArrayList<>();
+        patterns.add(new int[]{0});
+        patterns.add(new int[]{0, 127, 128, 255});
+        patterns.add(new int[]{16383, 16384, 2_097_151, 2_097_152});
+        patterns.add(new int[]{268_435_455, 268_435_456, Integer.MAX_VALUE});
+        List<int[]> decoded = SolutionStore.decode(SolutionStore.encode(patterns));
+        assertEquals(patterns.size(), decoded.size());
+        for (int k = 0; k < patterns.size(); k++) {
+            assertArrayEquals(patterns.get(k), decoded.get(k));
+        }
+        assertEquals(1, SolutionStore.encode(List.of()).length);
+    }
+}
@@ -0,0 +1,112 @@
+package Sokoban;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolutionVerifierTest {
+    // RR puts the top box on its goal; LDR walks round and pushes the bottom one.
+    private static final Level TWO_BOXES = Level.parse(List.of(
+            "######",
+            "#@$ .#",
+            "#  $.#",
+            "######"));
+    private static final Level CORRIDOR = Level.parse(List.of(
+            "#####",
+            "#@$.#",
+            "#####"));
+
+    @Test
+    void countsMovesAndPushesOfValidSolution() {
+        SolutionVerifier.Result result = new SolutionVerifier(TWO_BOXES).verify("RRLDR");
+
+        assertTrue(result.isValid());
+        assertEquals(SolutionVerifier.Failure.NONE, result.failure);
+        assertEquals(-1, result.errorIndex);
+        assertEquals(5, result.moves);
+        assertEquals(3, result.pushes);
+    }
+
+    @Test
+    void acceptsLowerCaseMoves() {
+        SolutionVerifier verifier = new SolutionVerifier(TWO_BOXES);
+
+        assertTrue(verifier.verify("rrldr").isValid());
+        assertTrue(verifier.verify("rRlDr").isValid());
+        assertEquals(3, verifier.verify("rrldr").pushes);
+    }
+
+    @Test
+    void rejectsUnknownMove() {
+        SolutionVerifier.Result result = new SolutionVerifier(TWO_BOXES).verify("RX");
+
+        assertEquals(SolutionVerifier.Failure.UNKNOWN_MOVE, result.failure);
+        assertEquals(1, result.errorIndex);
+        assertEquals(1, result.moves);
+        assertEquals(1, result.pushes);
+    }
+
+    @Test
+    void rejectsStepIntoWall() {
+        SolutionVerifier.Result result = new SolutionVerifier(TWO_BOXES).verify("DUU");
+
+        assertEquals(SolutionVerifier.Failure.INTO_WALL, result.failure);
+        assertEquals(2, result.errorIndex);
+        assertEquals(2, result.moves);
+        assertEquals(0, result.pushes);
+    }
+
+    @Test
+    void rejectsPushAgainstWallOrBox() {
+        SolutionVerifier.Result wall = new SolutionVerifier(TWO_BOXES).verify("RRR");
+        assertEquals(SolutionVerifier.Failure.BLOCKED_PUSH, wall.failure);
+        assertEquals(2, wall.errorIndex);
+        assertEquals(2, wall.pushes);
+
+        Level adjacent = Level.parse(List.of(
+                "#######",
+                "#@$$..#",
+                "#######"));
+        SolutionVerifier.Result box = new SolutionVerifier(adjacent).verify("R");
+        assertEquals(SolutionVerifier.Failure.BLOCKED_PUSH, box.failure);
+        assertEquals(0, box.errorIndex);
+        assertEquals(0, box.moves);
+        assertEquals(0, box.pushes);
+    }
+
+    @Test
+    void rejectsLegalMovesThatLeaveBoxOffGoal() {
+        SolutionVerifier.Result result = new SolutionVerifier(TWO_BOXES).verify("RR");
+
+        assertFalse(result.isValid());
+        assertEquals(SolutionVerifier.Failure.UNSOLVED, result.failure);
+        assertEquals(-1, result.errorIndex);
+        assertEquals(2, result.moves);
+        assertEquals(2, result.pushes);
+    }
+
+    @Test
+    void verifiesMixedLevelsInOrder() throws InterruptedException {
+        List<Level> levels = List.of(TWO_BOXES, CORRIDOR, TWO_BOXES, CORRIDOR, TWO_BOXES);
+        List<String> solutions = List.of("RRLDR", "r", "RR", "L", "RX");
+
+        SolutionVerifier.Result[] results = SolutionVerifier.verifyAll(levels, solutions, 3);
+
+        assertEquals(5, results.length);
+        assertEquals(SolutionVerifier.Failure.NONE, results[0].failure);
+        assertEquals(SolutionVerifier.Failure.NONE, results[1].failure);
+        assertEquals(1, results[1].pushes);
+        assertEquals(SolutionVerifier.Failure.UNSOLVED, results[2].failure);
+        assertEquals(SolutionVerifier.Failure.INTO_WALL, results[3].failure);
+        assertEquals(SolutionVerifier.Failure.UNKNOWN_MOVE, results[4].failure);
+        assertEquals(1, results[4].errorIndex);
+    }
+
+    @Test
+    void rejectsMismatchedBatch() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SolutionVerifier.verifyAll(List.of(TWO_BOXES, CORRIDOR), List.of("RRLDR"), 2));
+    }
+}
@@ -0,0 +1,117 @@
+import Sokoban.Level;
+import Sokoban.LevelGenerator;
+import Sokoban.SolutionVerifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SokobanSolverTest {
+    private static void assertSolves(Level level) throws Exception {
+        String solution = SokobanSolver.solve(level);
+        assertNotNull(solution, () -> "No solution to\n" + String.join("\n", level.toXsb()));
+        assertTrue(new SolutionVerifier(level).verify(solution).isValid(), solution);
+    }
+
+    // A box pushed into a tunnel may have to stop inside it, so the single push is kept beside
+    // the push through the whole tunnel.
+    @Test
+    void solvesLevelThatParksBoxInTunnel() throws Exception {
+        assertSolves(new LevelGenerator(8, 8, 2).generate(17));
+    }
+
+    // Filling a goal ahead of its packing order is allowed; the order only adds a macro.
+    @Test
+    void solvesLevelFilledOutOfPackingOrder() throws Exception {
+        assertSolves(new LevelGenerator(8, 8, 2).generate(11));
+    }
+
+    // Every generated level has a solution, recorded by the generator, so A* must find one too.
+    @Test
+    void solvesGeneratedLevels() throws Exception {
+        LevelGenerator generator = new LevelGenerator(8, 8, 2);
+        for (long seed = 1; seed <= 100; seed++) {
+            assertSolves(generator.generate(seed));
+        }
+    }
+
+    // The threads of solveAll share the level and its box arrays; none may see another's pushes.
+    @Test
+    void solvesSharedLevelConcurrently() throws Exception {
+        for (long seed = 1; seed <= 4; seed++) {
+            Level level = new LevelGenerator(10, 10, 3).generate(seed);
+            List<String> before = boxCells(level);
+            List<String> solutions = SokobanSolver.solveAll(Collections.nCopies(16, level), 8);
+            SolutionVerifier verifier = new SolutionVerifier(level);
+            for (String solution : solutions) {
+                assertNotNull(solution, "seed " + seed);
+                assertTrue(verifier.verify(solution).isValid(), "seed " + seed + ": " + solution);
+            }
+            assertEquals(before, boxCells(level), "seed " + seed);
+        }
+    }
+
+    private static List<String> boxCells(Level level) {
+        List<String> cells = new ArrayList<>();
+        for (Map.Entry<Integer, int[]> box : level.initBoxPositions().entrySet()) {
+            cells.add(box.getKey() + "=" + Arrays.toString(box.getValue()));
+        }
+        Collections.sort(cells);
+        return cells;
+    }
+
+    // #@$.# is solved by one push, though the search heuristic puts it at two.
+    @Test
+    void lowerBoundNeverOverestimates() {
+        Level level = new Level(new char[][]{
+                {'X', 'X', 'X', 'X', 'X'},
+                {'X', 'S', '#', 'E', 'X'},
+                {'X', 'X', 'X', 'X', 'X'}});
+        SokobanSolver solver = new SokobanSolver(level);
+        List<SokobanSolver.AnytimeSolution> found = new ArrayList<>();
+        Node solution = solver.anytime(SokobanSolver.ANYTIME_WEIGHT, SokobanSolver.ANYTIME_STEP,
+                System.nanoTime() + 10_000_000_000L, found::add);
+
+        assertEquals(1, solution.g);
+        assertEquals(1, solution.parent.lowerBound());
+        assertEquals(1.0, found.get(found.size() - 1).bound);
+    }
+
+    @Test
+    void lowerBoundHoldsAlongSolution() {
+        Level level = new LevelGenerator(8, 8, 2).generate(17);
+        Node solution = new SokobanSolver(level).a_star();
+        assertNotNull(solution);
+        for (Node node = solution; node != null; node = node.parent) {
+            assertTrue(node.g + node.lowerBound() <= solution.g, "Overestimate at g=" + node.g);
+        }
+    }
+
+    // The bitboard backend makes the single steps of the HashMap one, less pushes onto dead squares.
+    @Test
+    void bitboardChildrenAreSingleSteps() {
+        Level level = new LevelGenerator(10, 10, 3).generate(5);
+        int[] sokoban = level.sokoban();
+        Deque<Node> queue = new ArrayDeque<>();
+        Set<Node> seen = new HashSet<>();
+        queue.add(new Node(level, null, '\0', sokoban[0], sokoban[1], 0, level.initBoxPositions()));
+        while (!queue.isEmpty() && seen.size() < 500) {
+            Node node = queue.poll();
+            Set<Node> expected = new HashSet<>();
+            for (Node child : node.hashMapChildren()) {
+                boolean dead = false;
+                for (int[] box : child.boxPositions.values()) {
+                    dead |= level.isDeadSquare(level.cell(box[0], box[1]));
+                }
+                if (child.moves == null && !(dead && !child.boxPositions.keySet().equals(node.boxPositions.keySet())))
+                    expected.add(child);
+            }
+            List<Node> children = node.bitboardChildren();
+            assertEquals(expected, new HashSet<>(children));
+            for (Node child : children) {
+                if (seen.add(child)) queue.add(child);
+            }
+        }
+    }
+}
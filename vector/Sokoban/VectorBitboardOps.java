@@ -0,0 +1,153 @@
+package Sokoban;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BitboardOps} on the Vector API: every loop covers as many words per step as the
+ * preferred species holds, and finishes the words left over one at a time. Shifts between words
+ * load the two source words of each lane from overlapping windows of the array.
+ */
+final class VectorBitboardOps extends BitboardOps {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    String name() {
+        return "vector";
+    }
+
+    @Override
+    void and(long[] a, long[] b, long[] to) {
+        int w = 0;
+        for (int bound = SPECIES.loopBound(a.length); w < bound; w += LANES) {
+            LongVector.fromArray(SPECIES, a, w).and(LongVector.fromArray(SPECIES, b, w)).intoArray(to, w);
+        }
+        for (; w < a.length; w++) {
+            to[w] = a[w] & b[w];
+        }
+    }
+
+    @Override
+    void andNot(long[] a, long[] b, long[] to) {
+        int w = 0;
+        for (int bound = SPECIES.loopBound(a.length); w < bound; w += LANES) {
+            LongVector.fromArray(SPECIES, a, w)
+                    .lanewise(VectorOperators.AND_NOT, LongVector.fromArray(SPECIES, b, w))
+                    .intoArray(to, w);
+        }
+        for (; w < a.length; w++) {
+            to[w] = a[w] & ~b[w];
+        }
+    }
+
+    @Override
+    boolean intersects(long[] a, long[] b) {
+        int w = 0;
+        for (int bound = SPECIES.loopBound(a.length); w < bound; w += LANES) {
+            LongVector common = LongVector.fromArray(SPECIES, a, w).and(LongVector.fromArray(SPECIES, b, w));
+            if (common.compare(VectorOperators.NE, 0).anyTrue()) return true;
+        }
+        for (; w < a.length; w++) {
+            if ((a[w] & b[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    @Override
+    boolean subsetOf(long[] a, long[] b) {
+        int w = 0;
+        for (int bound = SPECIES.loopBound(a.length); w < bound; w += LANES) {
+            LongVector outside = LongVector.fromArray(SPECIES, a, w)
+                    .lanewise(VectorOperators.AND_NOT, LongVector.fromArray(SPECIES, b, w));
+            if (outside.compare(VectorOperators.NE, 0).anyTrue()) return false;
+        }
+        for (; w < a.length; w++) {
+            if ((a[w] & ~b[w]) != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    void shiftUp(long[] from, int wordShift, int bitShift, long[] to) {
+        // Lanes read words below the one they write, so shifting in place needs the scalar loop,
+        // which runs from the top down.
+        if (from == to) {
+            super.shiftUp(from, wordShift, bitShift, to);
+            return;
+        }
+        // Word w takes from[w - wordShift] and, below it, from[w - wordShift - 1]. Lanes start
+        // where both exist.
+        int first = Math.min(to.length, wordShift + 1);
+        for (int w = 0; w < first; w++) {
+            int source = w - wordShift;
+            to[w] = source >= 0 ? from[source] << bitShift : 0;
+        }
+        int w = first;
+        for (; w + LANES <= to.length; w += LANES) {
+            LongVector value = LongVector.fromArray(SPECIES, from, w - wordShift)
+                    .lanewise(VectorOperators.LSHL, bitShift);
+            if (bitShift != 0) {
+                value = value.or(LongVector.fromArray(SPECIES, from, w - wordShift - 1)
+                        .lanewise(VectorOperators.LSHR, 64 - bitShift));
+            }
+            value.intoArray(to, w);
+        }
+        for (; w < to.length; w++) {
+            int source = w - wordShift;
+            long value = from[source] << bitShift;
+            if (bitShift != 0) value |= from[source - 1] >>> (64 - bitShift);
+            to[w] = value;
+        }
+    }
+
+    @Override
+    void shiftDown(long[] from, int wordShift, int bitShift, long[] to) {
+        if (from == to) {
+            super.shiftDown(from, wordShift, bitShift, to);
+            return;
+        }
+        // Word w takes from[w + wordShift] and, above it, from[w + wordShift + 1]. Lanes stop
+        // where both still exist.
+        int w = 0;
+        for (; w + wordShift + 1 + LANES <= from.length && w + LANES <= to.length; w += LANES) {
+            LongVector value = LongVector.fromArray(SPECIES, from, w + wordShift)
+                    .lanewise(VectorOperators.LSHR, bitShift);
+            if (bitShift != 0) {
+                value = value.or(LongVector.fromArray(SPECIES, from, w + wordShift + 1)
+                        .lanewise(VectorOperators.LSHL, 64 - bitShift));
+            }
+            value.intoArray(to, w);
+        }
+        for (; w < to.length; w++) {
+            int source = w + wordShift;
+            long value = source < from.length ? from[source] >>> bitShift : 0;
+            if (bitShift != 0 && source + 1 < from.length) value |= from[source + 1] << (64 - bitShift);
+            to[w] = value;
+        }
+    }
+
+    @Override
+    boolean spread(long[] reach, long[] step, long[] passable) {
+        boolean grew = false;
+        int w = 0;
+        for (int bound = SPECIES.loopBound(reach.length); w < bound; w += LANES) {
+            LongVector before = LongVector.fromArray(SPECIES, reach, w);
+            LongVector after = before.or(LongVector.fromArray(SPECIES, step, w)
+                    .and(LongVector.fromArray(SPECIES, passable, w)));
+            if (after.compare(VectorOperators.NE, before).anyTrue()) {
+                after.intoArray(reach, w);
+                grew = true;
+            }
+        }
+        for (; w < reach.length; w++) {
+            long next = reach[w] | (step[w] & passable[w]);
+            if (next != reach[w]) {
+                reach[w] = next;
+                grew = true;
+            }
+        }
+        return grew;
+    }
+}
@@ -0,0 +1,113 @@
+package Sokoban;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link LockstepKernel} on the Vector API. Each vector holds one int per lane for as many lanes
+ * as the preferred species fits: the move, the player's next cell and the box cells are compared
+ * lane-wise, and moves, pushes and blocked lanes become masks instead of branches. The table
+ * lookups, the fitness update, which is in doubles, and the bookkeeping of lanes that fail are
+ * done lane by lane, the last two in the same order of operations as the scalar kernel so the
+ * scores come out identical.
+ */
+final class VectorLockstepKernel extends LockstepKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int WIDTH = SPECIES.length();
+
+    // Gather indices and the per-lane results read back for the fitness update.
+    private final int[] index = new int[WIDTH];
+    private final int[] gathered = new int[WIDTH];
+    private final int[] minDistance = new int[WIDTH];
+    private final int[] totalDistance = new int[WIDTH];
+
+    VectorLockstepKernel(int[] neighbours, int[] rowOf, int[] colOf, int[] goalDistance) {
+        super(neighbours, rowOf, colOf, goalDistance);
+    }
+
+    @Override
+    String name() {
+        return "vector";
+    }
+
+    @Override
+    void step(int i, int lanes, int boxCount, int[] player, int[] boxes, double[] fitness,
+              boolean[] active, int[] invalidAt, int[] direction) {
+        int stride = Population.LANES;
+        // LANES is a multiple of every species length, and lanes past the population are inactive.
+        for (int base = 0; base < lanes; base += WIDTH) {
+            VectorMask<Integer> on = VectorMask.fromArray(SPECIES, active, base);
+            if (!on.anyTrue()) continue;
+
+            IntVector d = IntVector.fromArray(SPECIES, direction, base);
+            IntVector p = IntVector.fromArray(SPECIES, player, base);
+            VectorMask<Integer> moving = on.and(d.compare(VectorOperators.GE, 0));
+            IntVector step = d.max(0);
+            IntVector next = p.blend(gather(neighbours, p.mul(4).add(step)), moving);
+            VectorMask<Integer> valid = next.compare(VectorOperators.NE, -1);
+            // Lanes that walked into a wall read the tables at cell 0, and are dropped by the masks.
+            IntVector at = next.max(0);
+
+            VectorMask<Integer> pushed = SPECIES.maskAll(false);
+            for (int b = 0; b < boxCount; b++) {
+                pushed = pushed.or(IntVector.fromArray(SPECIES, boxes, b * stride + base)
+                        .compare(VectorOperators.EQ, next, moving.and(valid)));
+            }
+            IntVector beyond = IntVector.broadcast(SPECIES, -1).blend(gather(neighbours, at.mul(4).add(step)), pushed);
+            VectorMask<Integer> blocked = pushed.and(beyond.compare(VectorOperators.EQ, -1));
+            for (int b = 0; b < boxCount; b++) {
+                blocked = blocked.or(IntVector.fromArray(SPECIES, boxes, b * stride + base)
+                        .compare(VectorOperators.EQ, beyond, pushed));
+            }
+            valid = valid.andNot(blocked);
+
+            long failed = on.andNot(valid).toLong();
+            while (failed != 0) {
+                int lane = base + Long.numberOfTrailingZeros(failed);
+                invalidAt[lane] = i;
+                fitness[lane] = 0;
+                active[lane] = false;
+                failed &= failed - 1;
+            }
+
+            VectorMask<Integer> ok = on.and(valid);
+            if (!ok.anyTrue()) continue;
+            p.blend(next, ok).intoArray(player, base);
+            VectorMask<Integer> moved = ok.and(pushed);
+            IntVector rows = gather(rowOf, at);
+            IntVector cols = gather(colOf, at);
+            IntVector min = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+            IntVector total = IntVector.zero(SPECIES);
+            for (int b = 0; b < boxCount; b++) {
+                IntVector box = IntVector.fromArray(SPECIES, boxes, b * stride + base);
+                box = box.blend(beyond, moved.and(box.compare(VectorOperators.EQ, next)));
+                box.intoArray(boxes, b * stride + base);
+                IntVector distance = rows.sub(gather(rowOf, box)).abs()
+                        .add(cols.sub(gather(colOf, box)).abs());
+                min = min.min(distance);
+                total = total.add(gather(goalDistance, box));
+            }
+            min.intoArray(minDistance, 0);
+            total.intoArray(totalDistance, 0);
+
+            long scored = ok.toLong();
+            while (scored != 0) {
+                int k = Long.numberOfTrailingZeros(scored);
+                score(fitness, base + k, boxCount, minDistance[k], totalDistance[k]);
+                scored &= scored - 1;
+            }
+        }
+    }
+
+    // table[indices], lane by lane. The index-mapped fromArray is not used: on JDK 17 its C2
+    // intrinsic can fault once the kernel is compiled, so the lookups are plain bounds-checked reads.
+    private IntVector gather(int[] table, IntVector indices) {
+        indices.intoArray(index, 0);
+        for (int k = 0; k < WIDTH; k++) {
+            gathered[k] = table[index[k]];
+        }
+        return IntVector.fromArray(SPECIES, gathered, 0);
+    }
+}